@@ -0,0 +1,77 @@
+package com.iradraconis.shrinkify;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst {@link PdfCompressor#compressPDFWithPDFBox(File, File)} vom Laden bis zum Speichern
+ * für jede Kombination aus Qualitäts- und Auflösungsstufe der Oberfläche.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@State(Scope.Thread)
+public class EndToEndBenchmark {
+
+    @Param({"SCAN", "SHARED_LOGO", "LINE_ART", "HUGE"})
+    public SyntheticPdfs.Kind kind;
+
+    @Param({"0.05", "0.1", "0.3", "0.5", "0.8", "1.0"})
+    public float quality;
+
+    @Param({"1.0", "0.9", "0.8", "0.7", "0.6", "0.5", "0.4", "0.3"})
+    public float scale;
+
+    private File input;
+    private File output;
+    private PdfCompressor compressor;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        input = SyntheticPdfs.create(kind);
+        output = File.createTempFile("shrinkify-bench-out-", ".pdf");
+        compressor = new PdfCompressor(new CompressionSettings(quality, false, scale));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        input.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    public CompressionStats compress(Counters counters) throws IOException {
+        CompressionStats stats = compressor.compressPDFWithPDFBox(input, output);
+        counters.megabytes += input.length() / (1024.0 * 1024.0);
+        return stats;
+    }
+}
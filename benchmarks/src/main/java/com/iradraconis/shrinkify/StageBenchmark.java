@@ -0,0 +1,163 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Misst die einzelnen Schritte der Bildverarbeitung getrennt: Dekodieren, Farbumwandlung,
+ * Skalieren, JPEG-Kodierung und Speichern. Gemessen wird jeweils das erste Bild des Test-PDFs.
+ * Der Zähler {@code megabytes} ergibt den Durchsatz in MB/s bezogen auf die Eingabe des Schritts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StageBenchmark {
+
+    @State(Scope.Thread)
+    public static class Input {
+
+        @Param({"SCAN", "SHARED_LOGO", "LINE_ART", "HUGE"})
+        public SyntheticPdfs.Kind kind;
+
+        File file;
+        PDDocument document;
+        PDImageXObject image;
+        BufferedImage decoded;
+        long encodedBytes;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            file = SyntheticPdfs.create(kind);
+            document = Loader.loadPDF(file);
+            image = firstImage(document.getPage(0).getResources());
+            encodedBytes = image.getStream().getLength();
+            decoded = image.getImage();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            document.close();
+            file.delete();
+        }
+
+        long decodedBytes() {
+            return (long) decoded.getWidth() * decoded.getHeight() * 4;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Preset {
+
+        // Stufen aus der Oberfläche
+        @Param({"0.05", "0.1", "0.3", "0.5", "0.8", "1.0"})
+        public float quality;
+
+        @Param({"1.0", "0.9", "0.8", "0.7", "0.6", "0.5", "0.4", "0.3"})
+        public float scale;
+
+        BufferedImage scaled;
+
+        @Setup(Level.Trial)
+        public void setUp(Input input) {
+            scaled = PixelTransform.transform(input.decoded, targetWidth(input), targetHeight(input), false, false);
+        }
+
+        int targetWidth(Input input) {
+            return Math.max(2, (int) (input.decoded.getWidth() * scale));
+        }
+
+        int targetHeight(Input input) {
+            return Math.max(2, (int) (input.decoded.getHeight() * scale));
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+
+        void add(long bytes) {
+            megabytes += bytes / (1024.0 * 1024.0);
+        }
+    }
+
+    @Benchmark
+    public BufferedImage decode(Input input, Counters counters) throws IOException {
+        // Mit Bereich, damit nicht das zwischengespeicherte Bild von PDFBox geliefert wird
+        BufferedImage result = input.image.getImage(new Rectangle(0, 0, input.image.getWidth(), input.image.getHeight()), 1);
+        counters.add(input.encodedBytes);
+        return result;
+    }
+
+    @Benchmark
+    public BufferedImage colorConvert(Input input, Counters counters) {
+        BufferedImage result = PixelTransform.transform(input.decoded, input.decoded.getWidth(), input.decoded.getHeight(), true, true);
+        counters.add(input.decodedBytes());
+        return result;
+    }
+
+    @Benchmark
+    public BufferedImage scale(Input input, Preset preset, Counters counters) {
+        BufferedImage result = PixelTransform.transform(input.decoded, preset.targetWidth(input), preset.targetHeight(input), false, true);
+        counters.add(input.decodedBytes());
+        return result;
+    }
+
+    @Benchmark
+    public int encode(Preset preset, Counters counters) throws IOException {
+        EncodedImage encoded = JpegEncoder.encode(preset.scaled, preset.quality, false);
+        int length = encoded.length();
+        encoded.release();
+        counters.add((long) preset.scaled.getWidth() * preset.scaled.getHeight() * 4);
+        return length;
+    }
+
+    @Benchmark
+    public void save(Input input, Counters counters) throws IOException {
+        // Wie beim Komprimieren; ab dem zweiten Aufruf sind Duplikate bereits zusammengelegt
+        CompactWriter.save(input.document, OutputStream.nullOutputStream(), new CompressionStats());
+        counters.add(input.file.length());
+    }
+
+    static PDImageXObject firstImage(PDResources resources) throws IOException {
+        for (COSName name : resources.getXObjectNames()) {
+            PDXObject xObject = resources.getXObject(name);
+            if (xObject instanceof PDImageXObject) {
+                return (PDImageXObject) xObject;
+            }
+        }
+        throw new IOException("Kein Bild auf der ersten Seite");
+    }
+}
@@ -0,0 +1,149 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+/**
+ * Erzeugt reproduzierbare Test-PDFs für die Benchmarks, ohne externe Dateien.
+ */
+public final class SyntheticPdfs {
+
+    public enum Kind {
+        // Gescannte Seiten: ein graues JPEG mit Text und Rauschen je Seite (150 dpi, A4)
+        SCAN,
+        // Ein Logo, auf jeder Seite als eigenes, aber inhaltsgleiches Bild
+        SHARED_LOGO,
+        // Strichzeichnungen mit wenigen Farben, Flate-kodiert
+        LINE_ART,
+        // Ein einzelnes sehr großes Bild (48 Megapixel)
+        HUGE
+    }
+
+    private static final int PAGES = 4;
+
+    private SyntheticPdfs() {
+    }
+
+    static File create(Kind kind) throws IOException {
+        File file = File.createTempFile("shrinkify-bench-" + kind.name().toLowerCase() + "-", ".pdf");
+        file.deleteOnExit();
+        try (PDDocument document = new PDDocument()) {
+            switch (kind) {
+                case SCAN:
+                    for (int i = 0; i < PAGES; i++) {
+                        addPage(document, JPEGFactory.createFromImage(document, scan(1240, 1754, i), 0.85f));
+                    }
+                    break;
+                case SHARED_LOGO:
+                    BufferedImage logo = logo(600, 200);
+                    for (int i = 0; i < PAGES; i++) {
+                        addPage(document, JPEGFactory.createFromImage(document, logo, 0.9f));
+                    }
+                    break;
+                case LINE_ART:
+                    for (int i = 0; i < PAGES; i++) {
+                        addPage(document, LosslessFactory.createFromImage(document, lineArt(1600, 1200, i)));
+                    }
+                    break;
+                default:
+                    addPage(document, JPEGFactory.createFromImage(document, photo(8000, 6000), 0.8f));
+                    break;
+            }
+            document.save(file);
+        }
+        return file;
+    }
+
+    private static void addPage(PDDocument document, PDImageXObject image) throws IOException {
+        PDPage page = new PDPage(PDRectangle.A4);
+        document.addPage(page);
+        try (PDPageContentStream contents = new PDPageContentStream(document, page)) {
+            contents.drawImage(image, 0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight());
+        }
+    }
+
+    private static BufferedImage scan(int width, int height, int seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(235, 235, 230));
+        g.fillRect(0, 0, width, height);
+        g.setColor(new Color(30, 30, 30));
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(new Font(Font.SERIF, Font.PLAIN, 22));
+        Random random = new Random(seed);
+        for (int y = 120; y < height - 100; y += 34) {
+            StringBuilder line = new StringBuilder();
+            while (line.length() < 80) {
+                line.append((char) ('a' + random.nextInt(26)));
+                if (random.nextInt(6) == 0) {
+                    line.append(' ');
+                }
+            }
+            g.drawString(line.toString(), 100, y);
+        }
+        g.dispose();
+        // Scanner-Rauschen
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            int v = (pixels[i] & 0xFF) + random.nextInt(17) - 8;
+            pixels[i] = (byte) Math.max(0, Math.min(255, v));
+        }
+        return image;
+    }
+
+    private static BufferedImage logo(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, new Color(20, 60, 140), width, height, new Color(80, 160, 220)));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.WHITE);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 96));
+        g.drawString("Logo", 160, 135);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage lineArt(int width, int height, int seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setStroke(new BasicStroke(3));
+        Random random = new Random(seed);
+        Color[] colors = {Color.BLACK, Color.BLUE, Color.RED};
+        for (int i = 0; i < 300; i++) {
+            g.setColor(colors[random.nextInt(colors.length)]);
+            g.drawLine(random.nextInt(width), random.nextInt(height), random.nextInt(width), random.nextInt(height));
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage photo(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(250, 240, 200), width, height, new Color(60, 110, 180)));
+        g.fillRect(0, 0, width, height);
+        g.setColor(new Color(200, 60, 40));
+        g.fillOval(width / 3, height / 3, width / 3, height / 3);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,263 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+/**
+ * Liest sehr große Bilder Zeile für Zeile direkt aus dem Datenstrom des Dokuments und verkleinert sie dabei
+ * auf die Zielgröße. Im Speicher liegen nur einige Zeilen, ein Puffer des Datenstroms und das Zielbild, weder
+ * das dekodierte Quellbild noch eine Kopie der kodierten Daten. Der JPEG-Encoder von ImageIO braucht das
+ * Zielbild als Ganzes; es ist aber um den Skalierungsfaktor im Quadrat kleiner als die Quelle.
+ */
+final class BandedImageReader {
+
+    // Ab dieser Pixelzahl wird streifenweise gelesen (etwa 160 MB als TYPE_INT_RGB)
+    static final long MIN_PIXELS = 40_000_000L;
+
+    // Stück des Datenstroms, das je Zugriff auf das Dokument gelesen wird
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private BandedImageReader() {
+    }
+
+    /**
+     * Liefert true, wenn das Bild streifenweise gelesen werden kann: unkomprimierte bzw. Flate-Bilder in
+     * 8 Bit Grau oder RGB, deren Datenstrom nur einmal durchlaufen wird. JPEG und JPEG 2000 nicht: deren
+     * Reader dekodieren bei jedem Bereich wieder ab Bildanfang, der Aufwand wüchse quadratisch mit der
+     * Zahl der Streifen. Bilder mit Masken werden nicht unterstützt.
+     */
+    static boolean isSupported(PDImageXObject image) throws IOException {
+        if (image.getSoftMask() != null || image.getMask() != null || image.getColorKeyMask() != null) {
+            return false;
+        }
+        return isRawDeviceImage(image);
+    }
+
+    /**
+     * Bytes, die während des Lesens höchstens belegt sind: Zeilenpuffer, Lesepuffer und Zielbild.
+     */
+    static long estimateBytes(PDImageXObject image, int targetWidth, int targetHeight) {
+        // Je Quellpixel eine ARGB-Zeile und zwei Zeilen mit bis zu drei Komponenten
+        return (long) image.getWidth() * 10 + 2 * READ_BUFFER + (long) targetWidth * targetHeight * 4;
+    }
+
+    /**
+     * Liest das Bild aus dem Dokument, ohne es zu kopieren. Das Dokument wird nur unter der Sperre
+     * {@code lock} und jeweils für ein Stück des Datenstroms angefasst, andere Threads kommen dazwischen dran.
+     */
+    static BufferedImage readScaled(PDImageXObject image, Object lock, int targetWidth, int targetHeight, boolean gray)
+            throws IOException {
+        int width;
+        int height;
+        int components;
+        boolean png;
+        InputStream input;
+        synchronized (lock) {
+            width = image.getWidth();
+            height = image.getHeight();
+            components = image.getColorSpace().getNumberOfComponents();
+            png = predictor(image) >= 10;
+            input = openDecoded(image, lock);
+        }
+        return readRaw(input, width, height, components, png, targetWidth, targetHeight, gray);
+    }
+
+    // Datenstrom zeilenweise entpacken; er wird nur einmal durchlaufen. Die Flate-Dekodierung von PDFBox
+    // würde das ganze entpackte Bild in einen Puffer schreiben, deshalb wird hier selbst entpackt.
+    private static BufferedImage readRaw(InputStream decoded, int width, int height, int components, boolean png,
+            int targetWidth, int targetHeight, boolean gray) throws IOException {
+        byte[] line = new byte[width * components];
+        byte[] previous = new byte[line.length];
+        byte[] tag = new byte[1];
+
+        PixelTransform transform = PixelTransform.begin(width, height, targetWidth, targetHeight, gray);
+        int[] row = transform.rowBuffer();
+        try (InputStream input = decoded) {
+            for (int y = 0; y < height; y++) {
+                if (y % 256 == 0) {
+                    checkInterrupted();
+                }
+                try {
+                    if ((png && IOUtils.populateBuffer(input, tag) < 1) || IOUtils.populateBuffer(input, line) < line.length) {
+                        break; // Verkürzte Daten: der Rest bleibt schwarz
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                if (png) {
+                    unfilterPngRow(tag[0], line, previous, components);
+                    System.arraycopy(line, 0, previous, 0, line.length);
+                }
+                if (components == 1) {
+                    for (int x = 0; x < width; x++) {
+                        int v = line[x] & 0xFF;
+                        row[x] = 0xFF000000 | (v << 16) | (v << 8) | v;
+                    }
+                } else {
+                    for (int x = 0, i = 0; x < width; x++, i += 3) {
+                        row[x] = 0xFF000000 | ((line[i] & 0xFF) << 16) | ((line[i + 1] & 0xFF) << 8) | (line[i + 2] & 0xFF);
+                    }
+                }
+                transform.addRow();
+            }
+        }
+        return transform.finish();
+    }
+
+    private static InputStream openDecoded(PDImageXObject image, Object lock) throws IOException {
+        InputStream raw = new LockedInputStream(image.getStream().getCOSObject().createRawInputStream(), lock);
+        if (image.getStream().getFilters().isEmpty()) {
+            return new BufferedInputStream(raw, READ_BUFFER);
+        }
+        // zlib-Kopf überspringen und ohne Prüfsumme entpacken, wie FlateFilter
+        raw.read();
+        raw.read();
+        return new InflaterInputStream(raw, new Inflater(true), READ_BUFFER) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                inf.end();
+            }
+        };
+    }
+
+    // PNG-Prädiktoren; jede Zeile beginnt mit der Art des Filters
+    private static void unfilterPngRow(int type, byte[] line, byte[] previous, int bytesPerPixel) {
+        switch (type) {
+            case 1: // Sub
+                for (int i = bytesPerPixel; i < line.length; i++) {
+                    line[i] += line[i - bytesPerPixel];
+                }
+                break;
+            case 2: // Up
+                for (int i = 0; i < line.length; i++) {
+                    line[i] += previous[i];
+                }
+                break;
+            case 3: // Average
+                for (int i = 0; i < line.length; i++) {
+                    int left = i >= bytesPerPixel ? line[i - bytesPerPixel] & 0xFF : 0;
+                    line[i] += (byte) ((left + (previous[i] & 0xFF)) >> 1);
+                }
+                break;
+            case 4: // Paeth
+                for (int i = 0; i < line.length; i++) {
+                    int a = i >= bytesPerPixel ? line[i - bytesPerPixel] & 0xFF : 0;
+                    int b = previous[i] & 0xFF;
+                    int c = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xFF : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    line[i] += (byte) (pa <= pb && pa <= pc ? a : pb <= pc ? b : c);
+                }
+                break;
+            default: // None
+                break;
+        }
+    }
+
+    private static int predictor(PDImageXObject image) {
+        COSDictionary parameters = decodeParameters(image);
+        return parameters != null ? parameters.getInt(COSName.PREDICTOR, 1) : 1;
+    }
+
+    private static COSDictionary decodeParameters(PDImageXObject image) {
+        COSBase parameters = image.getCOSObject().getDictionaryObject(COSName.DECODE_PARMS, COSName.DP);
+        if (parameters instanceof COSArray && ((COSArray) parameters).size() == 1) {
+            parameters = ((COSArray) parameters).getObject(0);
+        }
+        return parameters instanceof COSDictionary ? (COSDictionary) parameters : null;
+    }
+
+    // 8 Bit Grau oder RGB, unkomprimiert oder Flate mit höchstens PNG-Prädiktoren
+    private static boolean isRawDeviceImage(PDImageXObject image) throws IOException {
+        if (image.getBitsPerComponent() != 8 || image.getDecode() != null) {
+            return false;
+        }
+        PDColorSpace colorSpace = image.getColorSpace();
+        if (!(colorSpace instanceof PDDeviceGray) && !(colorSpace instanceof PDDeviceRGB)) {
+            return false;
+        }
+        List<COSName> filters = image.getStream().getFilters();
+        if (filters.isEmpty()) {
+            return true;
+        }
+        if (filters.size() != 1 || !COSName.FLATE_DECODE.equals(filters.get(0))) {
+            return false;
+        }
+        COSDictionary parameters = decodeParameters(image);
+        if (parameters == null) {
+            return true;
+        }
+        int predictor = parameters.getInt(COSName.PREDICTOR, 1);
+        if (predictor == 1) {
+            return true;
+        }
+        return predictor >= 10
+                && parameters.getInt(COSName.COLORS, 1) == colorSpace.getNumberOfComponents()
+                && parameters.getInt(COSName.BITS_PER_COMPONENT, 8) == 8
+                && parameters.getInt(COSName.COLUMNS, 1) == image.getWidth();
+    }
+
+    private static void checkInterrupted() throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Komprimierung abgebrochen");
+        }
+    }
+
+    // Jeder Lesevorgang positioniert die gemeinsame Quelle des Dokuments neu und läuft deshalb unter der Sperre
+    private static final class LockedInputStream extends FilterInputStream {
+        private final Object lock;
+
+        LockedInputStream(InputStream in, Object lock) {
+            super(in);
+            this.lock = lock;
+        }
+
+        @Override
+        public int read() throws IOException {
+            synchronized (lock) {
+                return in.read();
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            synchronized (lock) {
+                return in.read(b, off, len);
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            synchronized (lock) {
+                return in.skip(n);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                in.close();
+            }
+        }
+    }
+}
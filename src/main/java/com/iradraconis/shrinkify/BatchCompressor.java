@@ -0,0 +1,242 @@
+package com.iradraconis.shrinkify;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verarbeitet eine Liste von PDF-Dateien parallel mit einer begrenzten Anzahl von Worker-Threads.
+ * Die Ergebnisse werden in der Reihenfolge der Eingabedateien zurückgegeben.
+ */
+public class BatchCompressor {
+
+    public interface Listener {
+        // Wird aus einem Worker-Thread aufgerufen, sobald eine Datei fertig ist
+        void fileFinished(int index, FileResult result, int completed, int total);
+    }
+
+    // Namenspräfix der komprimierten Dateien im Zielverzeichnis
+    static final String OUTPUT_PREFIX = "komprimiert_";
+
+    private final CompressionSettings settings;
+    private final int workers;
+    private boolean useManifest = true;
+    // Ein Manifest je Zielverzeichnis, beim Überschreiben je Verzeichnis der Eingabedatei
+    private final Map<File, BatchManifest> manifests = new HashMap<>();
+
+    public BatchCompressor(CompressionSettings settings, int workers) {
+        this.settings = settings;
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * Legt fest, ob bereits komprimierte Dateien anhand des Manifests und der Markierung im Dokument
+     * übersprungen werden. Ohne Manifest wird jede Datei neu komprimiert und nichts aufgezeichnet.
+     */
+    public void setUseManifest(boolean useManifest) {
+        this.useManifest = useManifest;
+    }
+
+    public static int defaultWorkers() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Komprimiert alle Dateien. Ist {@code outputDir} null, werden die Originaldateien überschrieben.
+     */
+    public List<FileResult> run(List<File> inputFiles, File outputDir, Listener listener) throws InterruptedException {
+        return run(inputFiles, Collections.nCopies(inputFiles.size(), outputDir), listener);
+    }
+
+    /**
+     * Wie {@link #run(List, File, Listener)}, aber mit eigenem Zielverzeichnis je Datei (null: überschreiben),
+     * etwa um die Verzeichnisstruktur der Eingabe nachzubilden. Dateien, die auf eine bereits vergebene
+     * Zieldatei fallen würden, werden nicht komprimiert, sondern als Fehler gemeldet.
+     */
+    public List<FileResult> run(List<File> inputFiles, List<File> outputDirs, Listener listener) throws InterruptedException {
+        int total = inputFiles.size();
+        FileResult[] results = new FileResult[total];
+        AtomicInteger completed = new AtomicInteger();
+        // Zieldatei -> Eingabedatei, die sie zuerst beansprucht hat
+        Map<Path, File> targets = new HashMap<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, total)), workerThreadFactory());
+        try {
+            List<Future<?>> futures = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) {
+                int index = i;
+                File inputFile = inputFiles.get(i);
+                File outputDir = outputDirs.get(i);
+                Path target = (outputDir == null ? inputFile : outputFile(inputFile, outputDir)).toPath()
+                        .toAbsolutePath().normalize();
+                File claimedBy = targets.putIfAbsent(target, inputFile);
+                if (claimedBy != null) {
+                    results[index] = FileResult.failed(inputFile, 0,
+                            new IOException("Zieldatei " + target + " wird bereits für " + claimedBy + " verwendet"));
+                    if (listener != null) {
+                        listener.fileFinished(index, results[index], completed.incrementAndGet(), total);
+                    }
+                    continue;
+                }
+                futures.add(executor.submit(() -> {
+                    FileResult result = compressFile(inputFile, outputDir);
+                    results[index] = result;
+                    if (listener != null) {
+                        listener.fileFinished(index, result, completed.incrementAndGet(), total);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Fehler werden bereits im FileResult festgehalten
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<FileResult> ordered = new ArrayList<>(total);
+        for (FileResult result : results) {
+            ordered.add(result);
+        }
+        return ordered;
+    }
+
+    // outputDir ist das Zielverzeichnis dieser Datei, null zum Überschreiben
+    FileResult compressFile(File inputFile, File outputDir) {
+        long startTime = System.currentTimeMillis();
+        boolean overwriteFiles = outputDir == null;
+        File outputFile = null;
+        try {
+            long originalSize = inputFile.length();
+            BatchManifest manifest = null;
+            String inputHash = null;
+            if (!overwriteFiles) {
+                Files.createDirectories(outputDir.toPath());
+            }
+            if (useManifest) {
+                manifest = manifest(overwriteFiles ? inputFile.getAbsoluteFile().getParentFile() : outputDir);
+                inputHash = BatchManifest.sha256(inputFile);
+                FileResult skipped = findCompleted(manifest, inputFile, inputHash, outputDir, startTime);
+                if (skipped != null) {
+                    return skipped;
+                }
+            }
+
+            if (overwriteFiles) {
+                // Temporäre Datei erstellen
+                outputFile = File.createTempFile("temp_compressed_", ".pdf");
+                outputFile.deleteOnExit();
+            } else {
+                outputFile = outputFile(inputFile, outputDir);
+            }
+
+            PdfCompressor compressor = new PdfCompressor(settings);
+            // Ohne Manifest-Eintrag, etwa nach dem Verschieben der Datei, bleibt die Markierung im Dokument;
+            // sie wird beim ohnehin nötigen Laden geprüft
+            compressor.setSkipIfMarked(overwriteFiles && useManifest);
+            CompressionStats stats = compressor.compressPDFWithPDFBox(inputFile, outputFile);
+            if (stats.isAlreadyCompressed()) {
+                outputFile.delete();
+                // Im Manifest vermerken, damit die Datei beim nächsten Lauf nicht erneut geladen wird
+                if (manifest != null) {
+                    record(manifest, inputFile, inputHash, inputFile, originalSize);
+                }
+                return FileResult.skipped(inputFile, inputFile, originalSize, originalSize,
+                        System.currentTimeMillis() - startTime);
+            }
+
+            if (overwriteFiles) {
+                // Originaldatei durch komprimierte Datei ersetzen
+                Files.move(outputFile.toPath(), inputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                outputFile = inputFile;
+            }
+
+            if (manifest != null) {
+                record(manifest, inputFile, inputHash, outputFile, originalSize);
+            }
+            return new FileResult(inputFile, outputFile, originalSize, outputFile.length(),
+                    System.currentTimeMillis() - startTime, stats, null);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            if (overwriteFiles && outputFile != null) {
+                outputFile.delete();
+            }
+            return FileResult.failed(inputFile, System.currentTimeMillis() - startTime, e);
+        }
+    }
+
+    static File outputFile(File inputFile, File outputDir) {
+        return new File(outputDir, OUTPUT_PREFIX + inputFile.getName());
+    }
+
+    private BatchManifest manifest(File directory) throws IOException {
+        synchronized (manifests) {
+            BatchManifest manifest = manifests.get(directory);
+            if (manifest == null) {
+                manifest = BatchManifest.open(directory);
+                manifests.put(directory, manifest);
+            }
+            return manifest;
+        }
+    }
+
+    // Liefert ein Ergebnis ohne Komprimierung, wenn die Datei mit diesen Einstellungen bereits fertig ist
+    private FileResult findCompleted(BatchManifest manifest, File inputFile, String inputHash, File outputDir,
+            long startTime) throws IOException {
+        String settingsKey = settings.fingerprint();
+        if (outputDir != null) {
+            // Ausgabe muss noch unverändert vorhanden sein
+            File outputFile = outputFile(inputFile, outputDir);
+            BatchManifest.Entry entry = manifest.findByInput(inputHash, settingsKey);
+            if (entry != null && outputFile.isFile() && entry.outputHash.equals(BatchManifest.sha256(outputFile))) {
+                return FileResult.skipped(inputFile, outputFile, entry.originalSize, entry.compressedSize,
+                        System.currentTimeMillis() - startTime);
+            }
+            return null;
+        }
+
+        // Überschreiben: die Datei selbst ist bereits ein Ergebnis
+        BatchManifest.Entry entry = manifest.findByOutput(inputHash, settingsKey);
+        if (entry != null) {
+            return FileResult.skipped(inputFile, inputFile, entry.originalSize, entry.compressedSize,
+                    System.currentTimeMillis() - startTime);
+        }
+        return null;
+    }
+
+    private void record(BatchManifest manifest, File inputFile, String inputHash, File outputFile, long originalSize) {
+        try {
+            manifest.record(new BatchManifest.Entry(inputHash, settings.fingerprint(), BatchManifest.sha256(outputFile),
+                    originalSize, outputFile.length()), inputFile.getName());
+        } catch (IOException e) {
+            // Die Datei ist trotzdem fertig; sie wird beim nächsten Lauf nur erneut geprüft
+            e.printStackTrace();
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, "shrinkify-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,134 @@
+package com.iradraconis.shrinkify;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * Merkt sich im Zielverzeichnis, welche Dateien mit welchen Einstellungen bereits komprimiert wurden.
+ * Jede fertige Datei wird sofort als Zeile angehängt; bricht ein Lauf ab, setzt der nächste dort fort.
+ * Die Dateien werden über den SHA-256 ihres Inhalts erkannt, nicht über Namen oder Änderungszeit.
+ */
+final class BatchManifest {
+
+    static final String FILE_NAME = ".shrinkify-manifest";
+
+    private static final String HEADER = "# Shrinkify-Manifest 1: eingabe-sha256, einstellungen, ausgabe-sha256, originalgröße, komprimiert, datei";
+
+    private final File file;
+    // Schlüssel: Hash und Einstellungen
+    private final Map<String, Entry> byInput = new HashMap<>();
+    private final Map<String, Entry> byOutput = new HashMap<>();
+
+    static final class Entry {
+        final String inputHash;
+        final String settings;
+        final String outputHash;
+        final long originalSize;
+        final long compressedSize;
+
+        Entry(String inputHash, String settings, String outputHash, long originalSize, long compressedSize) {
+            this.inputHash = inputHash;
+            this.settings = settings;
+            this.outputHash = outputHash;
+            this.originalSize = originalSize;
+            this.compressedSize = compressedSize;
+        }
+    }
+
+    private BatchManifest(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Liest das Manifest im Verzeichnis; fehlt es, ist es leer und wird beim ersten Eintrag angelegt.
+     */
+    static BatchManifest open(File directory) throws IOException {
+        BatchManifest manifest = new BatchManifest(new File(directory, FILE_NAME));
+        if (!manifest.file.isFile()) {
+            return manifest;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifest.file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length < 5) {
+                    continue; // Beim Abbruch halb geschriebene Zeile
+                }
+                try {
+                    manifest.add(new Entry(fields[0], fields[1], fields[2], Long.parseLong(fields[3]), Long.parseLong(fields[4])));
+                } catch (NumberFormatException e) {
+                    // Beschädigte Zeile überspringen
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Eintrag für eine Eingabedatei mit diesem Inhalt, die mit denselben Einstellungen komprimiert wurde.
+     */
+    synchronized Entry findByInput(String inputHash, String settings) {
+        return byInput.get(inputHash + '\t' + settings);
+    }
+
+    /**
+     * Eintrag, dessen Ergebnis diesen Inhalt hat; im Überschreibmodus ist die Datei dann bereits komprimiert.
+     */
+    synchronized Entry findByOutput(String outputHash, String settings) {
+        return byOutput.get(outputHash + '\t' + settings);
+    }
+
+    /**
+     * Hängt den Eintrag an und schreibt ihn sofort, damit er einen Abbruch übersteht.
+     */
+    synchronized void record(Entry entry, String fileName) throws IOException {
+        boolean created = !file.exists();
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (created) {
+                writer.write(HEADER);
+                writer.newLine();
+            }
+            writer.write(String.join("\t", entry.inputHash, entry.settings, entry.outputHash,
+                    Long.toString(entry.originalSize), Long.toString(entry.compressedSize),
+                    fileName.replace('\t', ' ').replace('\n', ' ')));
+            writer.newLine();
+        }
+        add(entry);
+    }
+
+    private void add(Entry entry) {
+        // Spätere Einträge ersetzen frühere
+        byInput.put(entry.inputHash + '\t' + entry.settings, entry);
+        byOutput.put(entry.outputHash + '\t' + entry.settings, entry);
+    }
+
+    static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,131 @@
+package com.iradraconis.shrinkify;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Schreibt die Ergebnisse eines Laufs maschinenlesbar als JSON oder CSV.
+ * Das Format richtet sich nach der Dateiendung.
+ */
+public final class BatchReport {
+
+    private BatchReport() {
+    }
+
+    public static void write(File reportFile, List<FileResult> results) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8)) {
+            if (reportFile.getName().toLowerCase().endsWith(".csv")) {
+                writeCsv(writer, results);
+            } else {
+                writeJson(writer, results);
+            }
+        }
+    }
+
+    private static String status(FileResult result) {
+        if (!result.isSuccess()) {
+            return "error";
+        }
+        return result.isSkipped() ? "skipped" : "ok";
+    }
+
+    static void writeCsv(Writer writer, List<FileResult> results) throws IOException {
+        writer.write("file,output,status,original_bytes,compressed_bytes,images_found,images_recompressed,budget_wait_ms,load_ms,decode_ms,transform_ms,encode_ms,save_ms,image_bytes_in,image_bytes_out,peak_pixel_bytes,duplicate_streams,duplicate_stream_bytes,wall_time_ms,error\n");
+        for (FileResult result : results) {
+            writer.write(String.join(",",
+                    csv(result.getInputFile().getPath()),
+                    csv(result.getOutputFile() != null ? result.getOutputFile().getPath() : ""),
+                    status(result),
+                    Long.toString(result.getOriginalSize()),
+                    Long.toString(result.getCompressedSize()),
+                    Integer.toString(result.getStats().getImagesFound()),
+                    Integer.toString(result.getStats().getImagesRecompressed()),
+                    Long.toString(result.getStats().getBudgetWaitMillis()),
+                    Long.toString(result.getStats().getLoadMillis()),
+                    Long.toString(result.getStats().getDecodeMillis()),
+                    Long.toString(result.getStats().getTransformMillis()),
+                    Long.toString(result.getStats().getEncodeMillis()),
+                    Long.toString(result.getStats().getSaveMillis()),
+                    Long.toString(result.getStats().getImageBytesIn()),
+                    Long.toString(result.getStats().getImageBytesOut()),
+                    Long.toString(result.getStats().getPeakPixelBytes()),
+                    Integer.toString(result.getStats().getDuplicateStreams()),
+                    Long.toString(result.getStats().getDuplicateStreamBytes()),
+                    Long.toString(result.getDurationMillis()),
+                    csv(result.isSuccess() ? "" : String.valueOf(result.getError().getMessage()))));
+            writer.write('\n');
+        }
+    }
+
+    static void writeJson(Writer writer, List<FileResult> results) throws IOException {
+        writer.write("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            FileResult result = results.get(i);
+            writer.write("  {");
+            writer.write("\"file\": " + json(result.getInputFile().getPath()));
+            writer.write(", \"output\": " + (result.getOutputFile() != null ? json(result.getOutputFile().getPath()) : "null"));
+            writer.write(", \"status\": " + json(status(result)));
+            writer.write(", \"original_bytes\": " + result.getOriginalSize());
+            writer.write(", \"compressed_bytes\": " + result.getCompressedSize());
+            writer.write(", \"images_found\": " + result.getStats().getImagesFound());
+            writer.write(", \"images_recompressed\": " + result.getStats().getImagesRecompressed());
+            writer.write(", \"budget_wait_ms\": " + result.getStats().getBudgetWaitMillis());
+            writer.write(", \"load_ms\": " + result.getStats().getLoadMillis());
+            writer.write(", \"decode_ms\": " + result.getStats().getDecodeMillis());
+            writer.write(", \"transform_ms\": " + result.getStats().getTransformMillis());
+            writer.write(", \"encode_ms\": " + result.getStats().getEncodeMillis());
+            writer.write(", \"save_ms\": " + result.getStats().getSaveMillis());
+            writer.write(", \"image_bytes_in\": " + result.getStats().getImageBytesIn());
+            writer.write(", \"image_bytes_out\": " + result.getStats().getImageBytesOut());
+            writer.write(", \"peak_pixel_bytes\": " + result.getStats().getPeakPixelBytes());
+            writer.write(", \"duplicate_streams\": " + result.getStats().getDuplicateStreams());
+            writer.write(", \"duplicate_stream_bytes\": " + result.getStats().getDuplicateStreamBytes());
+            writer.write(", \"wall_time_ms\": " + result.getDurationMillis());
+            writer.write(", \"error\": " + (result.isSuccess() ? "null" : json(String.valueOf(result.getError().getMessage()))));
+            writer.write(i < results.size() - 1 ? "},\n" : "}\n");
+        }
+        writer.write("]\n");
+    }
+
+    static String json(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String csv(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
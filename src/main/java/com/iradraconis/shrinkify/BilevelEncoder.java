@@ -0,0 +1,114 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.filter.Filter;
+import org.apache.pdfbox.filter.FilterFactory;
+
+/**
+ * Wandelt Graustufenbilder per Schwellwert in 1-Bit-Bilder um und kodiert sie als
+ * CCITT Group 4 oder Flate, je nachdem, was kleiner ist.
+ */
+final class BilevelEncoder {
+
+    private BilevelEncoder() {
+    }
+
+    /**
+     * Kodiert ein Bild vom Typ {@code TYPE_BYTE_GRAY} als 1-Bit-Bild.
+     */
+    static EncodedImage encode(BufferedImage grayImage) throws IOException {
+        int width = grayImage.getWidth();
+        int height = grayImage.getHeight();
+        byte[] gray = ((DataBufferByte) grayImage.getRaster().getDataBuffer()).getData();
+
+        int threshold = otsuThreshold(gray, width * height);
+        byte[] packed = pack(gray, width, height, threshold);
+
+        // Group 4 ist für Text ideal, bei Rastern und Flächenmustern ist Flate oft kleiner
+        EncodeBuffer ccitt = encodeWithFilter(COSName.CCITTFAX_DECODE, invert(packed), width, height);
+        EncodeBuffer flate = encodeWithFilter(COSName.FLATE_DECODE, packed, width, height);
+        if (ccitt.size() <= flate.size()) {
+            flate.release();
+            return EncodedImage.ccittG4(ccitt, width, height);
+        }
+        ccitt.release();
+        return EncodedImage.flate(flate, width, height, 1, true);
+    }
+
+    // Globaler Schwellwert nach Otsu über das Grauwert-Histogramm
+    static int otsuThreshold(byte[] gray, int pixelCount) {
+        int[] histogram = new int[256];
+        for (int i = 0; i < pixelCount; i++) {
+            histogram[gray[i] & 0xFF]++;
+        }
+        long sumAll = 0;
+        for (int i = 0; i < 256; i++) {
+            sumAll += (long) i * histogram[i];
+        }
+
+        long sumBackground = 0;
+        int weightBackground = 0;
+        double bestVariance = -1;
+        int threshold = 128;
+        for (int t = 0; t < 256; t++) {
+            weightBackground += histogram[t];
+            if (weightBackground == 0) {
+                continue;
+            }
+            int weightForeground = pixelCount - weightBackground;
+            if (weightForeground == 0) {
+                break;
+            }
+            sumBackground += (long) t * histogram[t];
+            double meanBackground = (double) sumBackground / weightBackground;
+            double meanForeground = (double) (sumAll - sumBackground) / weightForeground;
+            double variance = (double) weightBackground * weightForeground
+                    * (meanBackground - meanForeground) * (meanBackground - meanForeground);
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                threshold = t;
+            }
+        }
+        return threshold;
+    }
+
+    // Packt die Pixel zeilenweise in Bits; 1 = weiß, 0 = schwarz (DeviceGray ohne BlackIs1)
+    private static byte[] pack(byte[] gray, int width, int height, int threshold) {
+        int rowBytes = (width + 7) / 8;
+        byte[] packed = new byte[rowBytes * height];
+        for (int y = 0; y < height; y++) {
+            int in = y * width;
+            int out = y * rowBytes;
+            for (int x = 0; x < width; x++) {
+                if ((gray[in + x] & 0xFF) > threshold) {
+                    packed[out + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                }
+            }
+        }
+        return packed;
+    }
+
+    // Der CCITT-Kodierer erwartet 1 = schwarz, wie in CCITTFactory
+    private static byte[] invert(byte[] packed) {
+        byte[] inverted = new byte[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            inverted[i] = (byte) ~packed[i];
+        }
+        return inverted;
+    }
+
+    private static EncodeBuffer encodeWithFilter(COSName filterName, byte[] packed, int width, int height) throws IOException {
+        Filter filter = FilterFactory.INSTANCE.getFilter(filterName);
+        COSDictionary parameters = new COSDictionary();
+        parameters.setInt(COSName.COLUMNS, width);
+        parameters.setInt(COSName.ROWS, height);
+        EncodeBuffer out = EncodeBuffer.acquire();
+        filter.encode(new ByteArrayInputStream(packed), out, parameters, 0);
+        return out;
+    }
+}
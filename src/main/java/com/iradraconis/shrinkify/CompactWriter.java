@@ -0,0 +1,270 @@
+package com.iradraconis.shrinkify;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdfwriter.compress.CompressParameters;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Speichert ein Dokument möglichst kompakt. Ströme mit identischem Inhalt und identischem Wörterbuch
+ * (Schriften, ICC-Profile, Bilder, Formulare, Inhaltsströme) werden vorher zu einem Objekt
+ * zusammengelegt. Geschrieben wird mit Objektströmen und komprimierter Querverweistabelle; PDFBox
+ * schreibt dabei nur Objekte, die vom Katalog oder den Dokumentinformationen aus erreichbar sind.
+ */
+final class CompactWriter {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // Verweise auf zusammengelegte Ströme können weitere Duplikate sichtbar machen (z. B. Bilder mit
+    // gleichen ICC-Profilen); mehr Durchgänge bringen in der Praxis nichts
+    private static final int MAX_ROUNDS = 4;
+
+    private final PDDocument document;
+    // Alle erreichbaren Ströme und die Stellen, an denen auf sie verwiesen wird
+    private final Map<COSStream, List<Reference>> references = new IdentityHashMap<>();
+    // Indirektes Objekt, über das ein Strom zuerst gefunden wurde
+    private final Map<COSStream, COSObject> indirectObjects = new IdentityHashMap<>();
+    private final Map<COSStream, COSStream> canonical = new IdentityHashMap<>();
+    private final Map<COSStream, String> hashes = new IdentityHashMap<>();
+    // Kennungen für indirekte Objekte im Wörterbuchschlüssel
+    private final Map<COSBase, Integer> objectIds = new IdentityHashMap<>();
+    private long mergedBytes;
+
+    // Fundstelle eines Stroms: Wörterbuch mit Schlüssel oder Array mit Index
+    private static final class Reference {
+        final COSBase container;
+        final COSName key;
+        final int index;
+
+        Reference(COSBase container, COSName key, int index) {
+            this.container = container;
+            this.key = key;
+            this.index = index;
+        }
+    }
+
+    private CompactWriter(PDDocument document) {
+        this.document = document;
+    }
+
+    /**
+     * Legt doppelte Ströme zusammen und speichert das Dokument. Die Anzahl der zusammengelegten Ströme
+     * und die eingesparten Bytes landen in stats.
+     */
+    static void save(PDDocument document, File outputFile, CompressionStats stats) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(outputFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)), BUFFER_SIZE)) {
+            save(document, out, stats);
+        }
+    }
+
+    /**
+     * Wie {@link #save(PDDocument, File, CompressionStats)}, schreibt aber in einen Strom, der nicht
+     * geschlossen wird.
+     */
+    static void save(PDDocument document, OutputStream out, CompressionStats stats) throws IOException {
+        CompactWriter writer = new CompactWriter(document);
+        writer.collectStreams();
+        int merged = writer.mergeDuplicates();
+        stats.setDuplicateStreams(merged);
+        stats.setDuplicateStreamBytes(writer.mergedBytes);
+        document.save(out, CompressParameters.DEFAULT_COMPRESSION);
+    }
+
+    // Durchläuft den Objektgraphen ab Katalog und Dokumentinformationen, jedes Objekt genau einmal
+    private void collectStreams() {
+        Set<COSBase> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<COSBase> pending = new ArrayDeque<>();
+        COSDictionary trailer = document.getDocument().getTrailer();
+        for (COSName key : new COSName[] {COSName.ROOT, COSName.INFO}) {
+            COSBase root = resolve(trailer.getItem(key));
+            if (root != null && visited.add(root)) {
+                pending.push(root);
+            }
+        }
+        while (!pending.isEmpty()) {
+            COSBase container = pending.pop();
+            if (container instanceof COSDictionary) {
+                COSDictionary dictionary = (COSDictionary) container;
+                for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet()) {
+                    visit(entry.getValue(), new Reference(dictionary, entry.getKey(), -1), visited, pending);
+                }
+            } else if (container instanceof COSArray) {
+                COSArray array = (COSArray) container;
+                for (int i = 0; i < array.size(); i++) {
+                    visit(array.get(i), new Reference(array, null, i), visited, pending);
+                }
+            }
+        }
+    }
+
+    private void visit(COSBase item, Reference reference, Set<COSBase> visited, Deque<COSBase> pending) {
+        COSBase value = resolve(item);
+        if (value instanceof COSStream) {
+            COSStream stream = (COSStream) value;
+            references.computeIfAbsent(stream, s -> new ArrayList<>()).add(reference);
+            if (item instanceof COSObject) {
+                indirectObjects.putIfAbsent(stream, (COSObject) item);
+            }
+        }
+        if ((value instanceof COSDictionary || value instanceof COSArray) && visited.add(value)) {
+            pending.push(value);
+        }
+    }
+
+    private static COSBase resolve(COSBase item) {
+        return item instanceof COSObject ? ((COSObject) item).getObject() : item;
+    }
+
+    private int mergeDuplicates() throws IOException {
+        int merged = 0;
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            // Nur Ströme gleicher Länge können gleich sein; gehasht wird erst bei gleicher Länge
+            Map<Long, List<COSStream>> byLength = new HashMap<>();
+            for (COSStream stream : references.keySet()) {
+                if (!canonical.containsKey(stream)) {
+                    byLength.computeIfAbsent(stream.getLength(), l -> new ArrayList<>()).add(stream);
+                }
+            }
+            int mergedThisRound = 0;
+            for (List<COSStream> candidates : byLength.values()) {
+                if (candidates.size() < 2) {
+                    continue;
+                }
+                Map<String, COSStream> byContent = new HashMap<>();
+                for (COSStream stream : candidates) {
+                    String key = dictionaryKey(stream) + '\n' + hash(stream);
+                    COSStream first = byContent.putIfAbsent(key, stream);
+                    if (first != null) {
+                        canonical.put(stream, first);
+                        mergedBytes += stream.getLength();
+                        mergedThisRound++;
+                    }
+                }
+            }
+            if (mergedThisRound == 0) {
+                break;
+            }
+            merged += mergedThisRound;
+        }
+
+        // Alle Verweise auf Duplikate auf das verbleibende Objekt umlenken
+        for (Map.Entry<COSStream, COSStream> entry : canonical.entrySet()) {
+            COSStream target = entry.getValue();
+            COSBase replacement = indirectObjects.containsKey(target) ? indirectObjects.get(target) : target;
+            for (Reference reference : references.get(entry.getKey())) {
+                if (reference.container instanceof COSDictionary) {
+                    ((COSDictionary) reference.container).setItem(reference.key, replacement);
+                } else {
+                    ((COSArray) reference.container).set(reference.index, replacement);
+                }
+            }
+        }
+        return merged;
+    }
+
+    // Wörterbuch ohne Länge, sortiert; indirekte Objekte zählen über ihre Identität
+    private String dictionaryKey(COSStream stream) {
+        StringBuilder sb = new StringBuilder();
+        List<COSName> keys = new ArrayList<>(stream.keySet());
+        keys.sort(null);
+        for (COSName key : keys) {
+            if (!COSName.LENGTH.equals(key)) {
+                sb.append('/').append(key.getName()).append(' ');
+                appendValue(sb, stream.getItem(key), 0);
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendValue(StringBuilder sb, COSBase item, int depth) {
+        if (item instanceof COSObject || item instanceof COSStream || depth > 32) {
+            COSBase value = resolve(item);
+            if (value instanceof COSStream && canonical.containsKey(value)) {
+                value = canonical.get(value);
+            }
+            sb.append('@').append(objectIds.computeIfAbsent(value, v -> objectIds.size()));
+        } else if (item instanceof COSName) {
+            sb.append('/').append(((COSName) item).getName());
+        } else if (item instanceof COSInteger) {
+            sb.append(((COSInteger) item).longValue());
+        } else if (item instanceof COSFloat) {
+            sb.append(((COSFloat) item).floatValue()).append('f');
+        } else if (item instanceof COSString) {
+            sb.append('<').append(((COSString) item).toHexString()).append('>');
+        } else if (item instanceof COSBoolean) {
+            sb.append(((COSBoolean) item).getValue());
+        } else if (item == null || item instanceof COSNull) {
+            sb.append("null");
+        } else if (item instanceof COSArray) {
+            sb.append('[');
+            for (COSBase element : (COSArray) item) {
+                appendValue(sb, element, depth + 1);
+                sb.append(' ');
+            }
+            sb.append(']');
+        } else if (item instanceof COSDictionary) {
+            COSDictionary dictionary = (COSDictionary) item;
+            List<COSName> keys = new ArrayList<>(dictionary.keySet());
+            keys.sort(null);
+            sb.append("<<");
+            for (COSName key : keys) {
+                sb.append('/').append(key.getName()).append(' ');
+                appendValue(sb, dictionary.getItem(key), depth + 1);
+                sb.append(' ');
+            }
+            sb.append(">>");
+        } else {
+            sb.append('@').append(objectIds.computeIfAbsent(item, v -> objectIds.size()));
+        }
+    }
+
+    // SHA-256 über die kodierten Daten, je Strom nur einmal berechnet
+    private String hash(COSStream stream) throws IOException {
+        String hash = hashes.get(stream);
+        if (hash != null) {
+            return hash;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream in = new DigestInputStream(stream.createRawInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        hash = HexFormat.of().formatHex(digest.digest());
+        hashes.put(stream, hash);
+        return hash;
+    }
+}
@@ -0,0 +1,391 @@
+package com.iradraconis.shrinkify;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kleiner HTTP-Dienst für andere Programme: {@code POST /compress} nimmt ein PDF entgegen und liefert
+ * das komprimierte PDF zurück, {@code GET /metrics} Durchsatz und Latenzen als JSON.
+ * Es laufen höchstens {@code workers} Komprimierungen gleichzeitig und {@code queueCapacity} warten;
+ * weitere Anfragen werden sofort mit 503 abgewiesen, ohne den Upload zu lesen.
+ */
+public class CompressionServer {
+
+    // Anzahl der Latenzen, aus denen die Perzentile berechnet werden
+    private static final int LATENCY_WINDOW = 1024;
+    // Zusätzliche HTTP-Threads, damit Abweisungen und Metriken auch unter Last sofort beantwortet werden
+    private static final int SPARE_HTTP_THREADS = 4;
+
+    private final InetSocketAddress address;
+    private final int workers;
+    private final long timeoutMillis;
+    private final long maxUploadBytes;
+    private final Semaphore admission;
+    private final int admissionCapacity;
+    private HttpServer server;
+    private ExecutorService httpExecutor;
+    private ExecutorService compressionExecutor;
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicInteger running = new AtomicInteger();
+    // Ringpuffer der letzten Latenzen und Zeitpunkte für Perzentile und Durchsatz
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private final long[] finishTimes = new long[LATENCY_WINDOW];
+    private int latencyCount;
+
+    public CompressionServer(InetSocketAddress address, int workers, int queueCapacity, long timeoutMillis,
+            long maxUploadBytes) {
+        this.address = address;
+        this.workers = Math.max(1, workers);
+        this.timeoutMillis = timeoutMillis;
+        this.maxUploadBytes = maxUploadBytes;
+        this.admissionCapacity = this.workers + Math.max(0, queueCapacity);
+        this.admission = new Semaphore(admissionCapacity);
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(address, 0);
+        httpExecutor = Executors.newFixedThreadPool(admissionCapacity + SPARE_HTTP_THREADS, threadFactory("shrinkify-http-"));
+        compressionExecutor = Executors.newFixedThreadPool(workers, threadFactory("shrinkify-server-"));
+        server.setExecutor(httpExecutor);
+        server.createContext("/compress", this::handleCompress);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/health", exchange -> sendText(exchange, 200, "ok\n"));
+        server.start();
+    }
+
+    /**
+     * Beendet den Dienst; laufende Anfragen erhalten bis zu {@code delaySeconds} Zeit.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        httpExecutor.shutdownNow();
+        compressionExecutor.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server != null ? server.getAddress() : address;
+    }
+
+    private void handleCompress(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Nur POST mit dem PDF als Inhalt\n");
+                return;
+            }
+            requests.incrementAndGet();
+            // Überlast sofort abweisen, bevor der Upload gelesen wird
+            if (!admission.tryAcquire()) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "5");
+                sendText(exchange, 503, "Ausgelastet, bitte später erneut versuchen\n");
+                return;
+            }
+            long start = System.nanoTime();
+            Job job = null;
+            try {
+                CompressionSettings settings;
+                try {
+                    settings = parseSettings(exchange.getRequestURI().getRawQuery());
+                } catch (IllegalArgumentException e) {
+                    sendText(exchange, 400, e.getMessage() + "\n");
+                    return;
+                }
+                String length = exchange.getRequestHeaders().getFirst("Content-Length");
+                if (length != null && length.matches("\\d{1,18}") && Long.parseLong(length) > maxUploadBytes) {
+                    sendText(exchange, 413, "Datei zu groß\n");
+                    return;
+                }
+
+                job = new Job(File.createTempFile("shrinkify_upload_", ".pdf"), File.createTempFile("shrinkify_result_", ".pdf"));
+                long uploaded = receive(exchange.getRequestBody(), job.inputFile);
+                if (uploaded > maxUploadBytes) {
+                    sendText(exchange, 413, "Datei zu groß\n");
+                    return;
+                }
+                bytesIn.addAndGet(uploaded);
+
+                Job submitted = job;
+                submitted.retain();
+                Future<CompressionStats> future = compressionExecutor.submit(() -> {
+                    if (!submitted.started.compareAndSet(false, true)) {
+                        return null; // Zeitlimit schon vor dem Start abgelaufen
+                    }
+                    running.incrementAndGet();
+                    try {
+                        return new PdfCompressor(settings).compressPDFWithPDFBox(submitted.inputFile, submitted.outputFile);
+                    } finally {
+                        running.decrementAndGet();
+                        submitted.release();
+                    }
+                });
+                // Die Zeitgrenze gilt ab dem Eingang, einschließlich Wartezeit und Upload
+                long remaining = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                try {
+                    future.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    cancel(job, future);
+                    timedOut.incrementAndGet();
+                    sendText(exchange, 504, "Zeitlimit überschritten\n");
+                    return;
+                } catch (ExecutionException e) {
+                    failed.incrementAndGet();
+                    e.getCause().printStackTrace();
+                    sendText(exchange, 422, "PDF konnte nicht komprimiert werden: " + e.getCause().getMessage() + "\n");
+                    return;
+                } catch (InterruptedException e) {
+                    cancel(job, future);
+                    Thread.currentThread().interrupt();
+                    sendText(exchange, 503, "Dienst wird beendet\n");
+                    return;
+                }
+
+                // Ergebnis zurückstreamen
+                long resultLength = job.outputFile.length();
+                exchange.getResponseHeaders().set("Content-Type", "application/pdf");
+                exchange.getResponseHeaders().set("X-Original-Size", Long.toString(uploaded));
+                exchange.getResponseHeaders().set("X-Compressed-Size", Long.toString(resultLength));
+                exchange.sendResponseHeaders(200, resultLength);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    Files.copy(job.outputFile.toPath(), body);
+                }
+                bytesOut.addAndGet(resultLength);
+                completed.incrementAndGet();
+                recordLatency(System.nanoTime() - start);
+            } finally {
+                if (job != null) {
+                    job.release();
+                } else {
+                    admission.release();
+                }
+            }
+        }
+    }
+
+    // Eine angenommene Anfrage. Platz und temporäre Dateien werden erst frei, wenn sowohl die Anfrage
+    // als auch eine bereits laufende Komprimierung fertig sind; ein Abbruch gibt also keinen Platz frei,
+    // solange die Komprimierung noch rechnet.
+    private final class Job {
+        final File inputFile;
+        final File outputFile;
+        final AtomicBoolean started = new AtomicBoolean();
+        // Anfrage und, sobald übergeben, die Komprimierung
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Job(File inputFile, File outputFile) {
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+        }
+
+        void retain() {
+            references.incrementAndGet();
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                inputFile.delete();
+                outputFile.delete();
+                admission.release();
+            }
+        }
+    }
+
+    private static void cancel(Job job, Future<?> future) {
+        future.cancel(true);
+        if (job.started.compareAndSet(false, true)) {
+            job.release(); // Die Komprimierung beginnt nicht mehr
+        }
+    }
+
+    // Liest den Upload, höchstens ein Byte über die Grenze hinaus
+    private long receive(InputStream body, File target) throws IOException {
+        try (InputStream limited = body) {
+            Files.copy(new LimitedInputStream(limited, maxUploadBytes + 1), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target.length();
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+
+    // Parameter wie auf der Kommandozeile: quality, resolution (Prozent), dpi, bw, bilevel, adaptive,
+    // fast-downsample, memory-budget (MB) und target-size (MB)
+    static CompressionSettings parseSettings(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery != null && !rawQuery.isEmpty()) {
+            for (String pair : rawQuery.split("&")) {
+                int separator = pair.indexOf('=');
+                String key = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator), StandardCharsets.UTF_8);
+                String value = separator < 0 ? "true" : URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+                parameters.put(key, value);
+            }
+        }
+        try {
+            float quality = Float.parseFloat(parameters.getOrDefault("quality", "0.5"));
+            if (quality <= 0 || quality > 1) {
+                throw new IllegalArgumentException("Qualität muss zwischen 0 und 1 liegen: " + quality);
+            }
+            int percent = Integer.parseInt(parameters.getOrDefault("resolution", "40").replace("%", ""));
+            if (percent < 1 || percent > 100) {
+                throw new IllegalArgumentException("Auflösung muss zwischen 1 und 100 Prozent liegen: " + percent);
+            }
+            CompressionSettings settings = new CompressionSettings(quality,
+                    Boolean.parseBoolean(parameters.getOrDefault("bw", "false")), percent / 100f);
+            settings.setTargetDpi(Float.parseFloat(parameters.getOrDefault("dpi", "0")));
+            settings.setBilevel(Boolean.parseBoolean(parameters.getOrDefault("bilevel", "false")));
+            settings.setAdaptiveCodec(Boolean.parseBoolean(parameters.getOrDefault("adaptive", "false")));
+            settings.setFastDownsample(Boolean.parseBoolean(parameters.getOrDefault("fast-downsample", "false")));
+            long memoryBudgetMb = Long.parseLong(parameters.getOrDefault("memory-budget", "0"));
+            if (memoryBudgetMb < 0) {
+                throw new IllegalArgumentException("Speicherbudget darf nicht negativ sein: " + memoryBudgetMb);
+            }
+            settings.setMemoryBudgetBytes(memoryBudgetMb * 1024 * 1024);
+            if (parameters.containsKey("target-size")) {
+                double targetSizeMb = Double.parseDouble(parameters.get("target-size"));
+                if (!(targetSizeMb > 0)) {
+                    throw new IllegalArgumentException("Zielgröße muss größer als 0 sein: " + targetSizeMb);
+                }
+                settings.setTargetSizeBytes((long) (targetSizeMb * 1024 * 1024));
+            }
+            return settings;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ungültiger Parameter: " + e.getMessage());
+        }
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        int index = latencyCount % LATENCY_WINDOW;
+        latencies[index] = nanos;
+        finishTimes[index] = System.nanoTime();
+        latencyCount++;
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long[] window;
+            long[] times;
+            synchronized (this) {
+                int size = Math.min(latencyCount, LATENCY_WINDOW);
+                window = Arrays.copyOf(latencies, size);
+                times = Arrays.copyOf(finishTimes, size);
+            }
+            Arrays.sort(window);
+            // Durchsatz der letzten Minute
+            long now = System.nanoTime();
+            long lastMinute = Arrays.stream(times).filter(t -> now - t <= TimeUnit.MINUTES.toNanos(1)).count();
+            double uptimeSeconds = (now - startNanos) / 1e9;
+
+            String json = "{"
+                    + "\"uptime_s\": " + Math.round(uptimeSeconds)
+                    + ", \"requests\": " + requests.get()
+                    + ", \"completed\": " + completed.get()
+                    + ", \"rejected\": " + rejected.get()
+                    + ", \"timed_out\": " + timedOut.get()
+                    + ", \"failed\": " + failed.get()
+                    + ", \"running\": " + running.get()
+                    + ", \"waiting\": " + Math.max(0, admissionCapacity - admission.availablePermits() - running.get())
+                    + ", \"capacity\": " + admissionCapacity
+                    + ", \"bytes_in\": " + bytesIn.get()
+                    + ", \"bytes_out\": " + bytesOut.get()
+                    + ", \"completed_last_minute\": " + lastMinute
+                    + ", \"latency_ms\": {"
+                    + "\"p50\": " + percentileMillis(window, 0.50)
+                    + ", \"p90\": " + percentileMillis(window, 0.90)
+                    + ", \"p99\": " + percentileMillis(window, 0.99)
+                    + ", \"max\": " + percentileMillis(window, 1.0)
+                    + ", \"samples\": " + window.length
+                    + "}}\n";
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            sendText(exchange, 200, json);
+        }
+    }
+
+    private static long percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1_000_000;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        if (!exchange.getResponseHeaders().containsKey("Content-Type")) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.iradraconis.shrinkify;
+
+/**
+ * Einstellungen für die Komprimierung eines Dokuments.
+ * Wird einmal pro Lauf gelesen und von allen Worker-Threads gemeinsam verwendet.
+ */
+public class CompressionSettings {
+
+    private final float imageQuality;
+    private final boolean convertBW;
+    private final float resolutionScale;
+    private boolean deduplicateByContent = true;
+    private boolean fastDownsample;
+    private float targetDpi;
+    private boolean bilevel;
+    private boolean adaptiveCodec;
+    private long memoryBudgetBytes;
+    private long targetSizeBytes;
+
+    public CompressionSettings(float imageQuality, boolean convertBW, float resolutionScale) {
+        this.imageQuality = imageQuality;
+        this.convertBW = convertBW;
+        this.resolutionScale = resolutionScale;
+    }
+
+    public float getImageQuality() {
+        return imageQuality;
+    }
+
+    public boolean isConvertBW() {
+        return convertBW;
+    }
+
+    public float getResolutionScale() {
+        return resolutionScale;
+    }
+
+    /**
+     * Legt fest, ob Bilder mit identischem Inhalt in verschiedenen Objekten zusammengeführt werden.
+     * Bilder, die auf dasselbe Objekt verweisen, werden immer nur einmal verarbeitet.
+     */
+    public void setDeduplicateByContent(boolean deduplicateByContent) {
+        this.deduplicateByContent = deduplicateByContent;
+    }
+
+    public boolean isDeduplicateByContent() {
+        return deduplicateByContent;
+    }
+
+    /**
+     * Legt fest, ob JPEG- und JPEG-2000-Bilder beim Verkleinern direkt in reduzierter Auflösung
+     * dekodiert werden. Schneller und sparsamer, aber etwas gröber als die volle Dekodierung.
+     */
+    public void setFastDownsample(boolean fastDownsample) {
+        this.fastDownsample = fastDownsample;
+    }
+
+    public boolean isFastDownsample() {
+        return fastDownsample;
+    }
+
+    /**
+     * Ziel-Auflösung in dpi. Ist sie gesetzt, wird jedes Bild anhand seiner Darstellungsgröße
+     * auf der Seite auf diese Auflösung verkleinert, statt um einen festen Prozentsatz.
+     * Bilder, die bereits darunter liegen, bleiben unverändert. 0 schaltet den Modus ab.
+     */
+    public void setTargetDpi(float targetDpi) {
+        this.targetDpi = targetDpi;
+    }
+
+    public float getTargetDpi() {
+        return targetDpi;
+    }
+
+    /**
+     * 1-Bit-Dokument: Bilder werden per Schwellwert in Schwarz/Weiß umgewandelt und als
+     * CCITT Group 4 oder Flate mit 1 Bit pro Pixel gespeichert statt als JPEG.
+     */
+    public void setBilevel(boolean bilevel) {
+        this.bilevel = bilevel;
+    }
+
+    public boolean isBilevel() {
+        return bilevel;
+    }
+
+    /**
+     * Legt fest, ob die Kodierung pro Bild gewählt wird: JPEG für Fotos, verlustfreies Flate mit
+     * Palette für Grafiken und CCITT für reine Schwarz/Weiß-Bilder.
+     */
+    public void setAdaptiveCodec(boolean adaptiveCodec) {
+        this.adaptiveCodec = adaptiveCodec;
+    }
+
+    public boolean isAdaptiveCodec() {
+        return adaptiveCodec;
+    }
+
+    /**
+     * Speicherbudget für Datenströme des Dokuments. Ist es gesetzt, werden neue und geänderte
+     * Ströme darüber hinaus in eine temporäre Datei ausgelagert, sodass auch sehr große Dokumente
+     * mit festem Heap verarbeitet werden können. 0 hält alles im Speicher.
+     */
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    /**
+     * Zielgröße je Dokument. Ist sie gesetzt, werden JPEG-Qualität und Auflösung pro Dokument
+     * so gewählt, dass die Datei möglichst knapp darunter bleibt; die eingestellte Qualität und
+     * Auflösung gelten dann als Obergrenze. 0 schaltet den Modus aus.
+     */
+    public void setTargetSizeBytes(long targetSizeBytes) {
+        this.targetSizeBytes = targetSizeBytes;
+    }
+
+    public long getTargetSizeBytes() {
+        return targetSizeBytes;
+    }
+
+    /**
+     * Alle Einstellungen, die das Ergebnis beeinflussen, als kurzer Text. Gleicher Text bedeutet,
+     * dass eine erneute Komprimierung dasselbe Ergebnis liefern würde.
+     */
+    String fingerprint() {
+        return "q=" + imageQuality
+                + ";bw=" + convertBW
+                + ";scale=" + resolutionScale
+                + ";dedup=" + deduplicateByContent
+                + ";fast=" + fastDownsample
+                + ";dpi=" + targetDpi
+                + ";bilevel=" + bilevel
+                + ";adaptive=" + adaptiveCodec
+                + ";target=" + targetSizeBytes;
+    }
+}
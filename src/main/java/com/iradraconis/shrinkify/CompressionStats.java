@@ -0,0 +1,195 @@
+package com.iradraconis.shrinkify;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Kennzahlen zur Komprimierung eines Dokuments. Die Zeiten der einzelnen Bilder werden über alle
+ * Bild-Threads aufsummiert und können deshalb zusammen länger sein als die Laufzeit der Datei.
+ */
+public class CompressionStats {
+
+    private int imagesFound;
+    private int imagesRecompressed;
+    private long loadNanos;
+    private long saveNanos;
+    private int targetAttempts;
+    private float chosenQuality;
+    private float chosenScale;
+    private int duplicateStreams;
+    private long duplicateStreamBytes;
+    private boolean alreadyCompressed;
+    // Wird aus den Bild-Threads erhöht
+    private final AtomicLong budgetWaitNanos = new AtomicLong();
+    private final AtomicLong decodeNanos = new AtomicLong();
+    private final AtomicLong transformNanos = new AtomicLong();
+    private final AtomicLong encodeNanos = new AtomicLong();
+    private final AtomicLong imageBytesIn = new AtomicLong();
+    private final AtomicLong imageBytesOut = new AtomicLong();
+    private final AtomicLong reservedPixelBytes = new AtomicLong();
+    private final AtomicLong peakPixelBytes = new AtomicLong();
+
+    public int getImagesFound() {
+        return imagesFound;
+    }
+
+    void setImagesFound(int imagesFound) {
+        this.imagesFound = imagesFound;
+    }
+
+    /**
+     * Anzahl der Bilder, die durch eine neu kodierte Fassung ersetzt wurden.
+     */
+    public int getImagesRecompressed() {
+        return imagesRecompressed;
+    }
+
+    void incrementImagesRecompressed() {
+        imagesRecompressed++;
+    }
+
+    void resetImagesRecompressed() {
+        imagesRecompressed = 0;
+    }
+
+    /**
+     * Anzahl der Kodierversuche im Zielgrößenmodus; 0, wenn der Modus nicht aktiv war.
+     */
+    public int getTargetAttempts() {
+        return targetAttempts;
+    }
+
+    void incrementTargetAttempts() {
+        targetAttempts++;
+    }
+
+    /**
+     * Im Zielgrößenmodus gewählte JPEG-Qualität.
+     */
+    public float getChosenQuality() {
+        return chosenQuality;
+    }
+
+    void setChosenQuality(float chosenQuality) {
+        this.chosenQuality = chosenQuality;
+    }
+
+    /**
+     * Im Zielgrößenmodus gewählter Faktor auf die eingestellte Auflösung (1 = unverändert).
+     */
+    public float getChosenScale() {
+        return chosenScale;
+    }
+
+    void setChosenScale(float chosenScale) {
+        this.chosenScale = chosenScale;
+    }
+
+    /**
+     * Anzahl der Ströme, die beim Speichern mit einem inhaltsgleichen Strom zusammengelegt wurden.
+     */
+    public int getDuplicateStreams() {
+        return duplicateStreams;
+    }
+
+    void setDuplicateStreams(int duplicateStreams) {
+        this.duplicateStreams = duplicateStreams;
+    }
+
+    /**
+     * Kodierte Größe der zusammengelegten Ströme.
+     */
+    public long getDuplicateStreamBytes() {
+        return duplicateStreamBytes;
+    }
+
+    void setDuplicateStreamBytes(long duplicateStreamBytes) {
+        this.duplicateStreamBytes = duplicateStreamBytes;
+    }
+
+    /**
+     * true, wenn die Datei bereits mit diesen Einstellungen komprimiert war und nichts geschrieben wurde.
+     */
+    public boolean isAlreadyCompressed() {
+        return alreadyCompressed;
+    }
+
+    void setAlreadyCompressed(boolean alreadyCompressed) {
+        this.alreadyCompressed = alreadyCompressed;
+    }
+
+    /**
+     * Zeit, die Bilder dieses Dokuments auf freien Speicher im {@link PixelBudget} gewartet haben.
+     */
+    public long getBudgetWaitMillis() {
+        return budgetWaitNanos.get() / 1_000_000;
+    }
+
+    public long getLoadMillis() {
+        return loadNanos / 1_000_000;
+    }
+
+    void setLoadNanos(long loadNanos) {
+        this.loadNanos = loadNanos;
+    }
+
+    public long getSaveMillis() {
+        return saveNanos / 1_000_000;
+    }
+
+    void setSaveNanos(long saveNanos) {
+        this.saveNanos = saveNanos;
+    }
+
+    public long getDecodeMillis() {
+        return decodeNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Farbumwandlung und Skalierung; bei streifenweise gelesenen Bildern in der Dekodierzeit enthalten.
+     */
+    public long getTransformMillis() {
+        return transformNanos.get() / 1_000_000;
+    }
+
+    public long getEncodeMillis() {
+        return encodeNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Summe der Originalgrößen aller bearbeiteten Bilder.
+     */
+    public long getImageBytesIn() {
+        return imageBytesIn.get();
+    }
+
+    /**
+     * Summe der Größen nach der Bearbeitung; Bilder, deren Original bleibt, zählen mit der Originalgröße.
+     */
+    public long getImageBytesOut() {
+        return imageBytesOut.get();
+    }
+
+    /**
+     * Höchster gleichzeitig reservierter Bildspeicher dieses Dokuments.
+     */
+    public long getPeakPixelBytes() {
+        return peakPixelBytes.get();
+    }
+
+    void addImage(ImageCompressionEvent image) {
+        decodeNanos.addAndGet(image.decodeTime);
+        transformNanos.addAndGet(image.transformTime);
+        encodeNanos.addAndGet(image.encodeTime);
+        budgetWaitNanos.addAndGet(image.budgetWaitTime);
+        imageBytesIn.addAndGet(image.bytesIn);
+        imageBytesOut.addAndGet(image.bytesOut);
+    }
+
+    void pixelsReserved(long bytes) {
+        peakPixelBytes.accumulateAndGet(reservedPixelBytes.addAndGet(bytes), Math::max);
+    }
+
+    void pixelsReleased(long bytes) {
+        reservedPixelBytes.addAndGet(-bytes);
+    }
+}
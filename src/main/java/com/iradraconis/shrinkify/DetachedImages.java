@@ -0,0 +1,113 @@
+package com.iradraconis.shrinkify;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+/**
+ * Erstellt Kopien von Bildern, deren Daten vollständig im Speicher liegen.
+ * PDFBox-Dokumente sind nicht threadsicher; eine solche Kopie greift nicht mehr auf das
+ * Dokument zu und kann in einem beliebigen Thread dekodiert werden.
+ * Das Kopieren selbst muss unter der Sperre des Dokuments erfolgen. Die Kopie liegt im Heap und wird
+ * deshalb zusammen mit den Pixeln im {@link PixelBudget} reserviert.
+ */
+final class DetachedImages {
+
+    private DetachedImages() {
+    }
+
+    static PDImageXObject detach(PDImageXObject source) throws IOException {
+        COSStream copy = (COSStream) copy(source.getCOSObject(), new IdentityHashMap<>());
+        return new PDImageXObject(new PDStream(copy), null);
+    }
+
+    /**
+     * Bytes, die eine Kopie von {@link #detach} belegt: die Rohdaten des Bildes und seiner Masken.
+     */
+    static long copiedBytes(PDImageXObject source) {
+        return copiedBytes(source.getCOSObject(), Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    private static long copiedBytes(COSBase base, Set<COSBase> visited) {
+        if (base instanceof COSObject) {
+            return copiedBytes(((COSObject) base).getObject(), visited);
+        }
+        if (base == null || !visited.add(base)) {
+            return 0;
+        }
+        long bytes = base instanceof COSStream ? ((COSStream) base).getLength() : 0;
+        if (base instanceof COSDictionary) {
+            for (Map.Entry<COSName, COSBase> entry : ((COSDictionary) base).entrySet()) {
+                if (!COSName.METADATA.equals(entry.getKey()) && !COSName.OC.equals(entry.getKey())) {
+                    bytes += copiedBytes(entry.getValue(), visited);
+                }
+            }
+        } else if (base instanceof COSArray) {
+            for (COSBase item : (COSArray) base) {
+                bytes += copiedBytes(item, visited);
+            }
+        }
+        return bytes;
+    }
+
+    // Kopiert ein COS-Objekt samt aller indirekten Verweise (z. B. SMask, ICC-Profile)
+    private static COSBase copy(COSBase base, Map<COSBase, COSBase> copies) throws IOException {
+        if (base instanceof COSObject) {
+            return copy(((COSObject) base).getObject(), copies);
+        }
+        COSBase existing = copies.get(base);
+        if (existing != null) {
+            return existing;
+        }
+        if (base instanceof COSStream) {
+            COSStream original = (COSStream) base;
+            COSStream stream = new COSStream();
+            copies.put(base, stream);
+            copyEntries(original, stream, copies);
+            try (InputStream in = original.createRawInputStream();
+                 OutputStream out = stream.createRawOutputStream()) {
+                in.transferTo(out);
+            }
+            return stream;
+        }
+        if (base instanceof COSDictionary) {
+            COSDictionary dictionary = new COSDictionary();
+            copies.put(base, dictionary);
+            copyEntries((COSDictionary) base, dictionary, copies);
+            return dictionary;
+        }
+        if (base instanceof COSArray) {
+            COSArray original = (COSArray) base;
+            COSArray array = new COSArray();
+            copies.put(base, array);
+            for (int i = 0; i < original.size(); i++) {
+                array.add(copy(original.get(i), copies));
+            }
+            return array;
+        }
+        // Namen, Zahlen und Strings werden nicht verändert und können geteilt werden
+        return base;
+    }
+
+    private static void copyEntries(COSDictionary source, COSDictionary target, Map<COSBase, COSBase> copies) throws IOException {
+        for (Map.Entry<COSName, COSBase> entry : source.entrySet()) {
+            // Metadaten und optionale Inhalte werden zum Dekodieren nicht gebraucht
+            if (COSName.METADATA.equals(entry.getKey()) || COSName.OC.equals(entry.getKey())) {
+                continue;
+            }
+            target.setItem(entry.getKey(), copy(entry.getValue(), copies));
+        }
+    }
+}
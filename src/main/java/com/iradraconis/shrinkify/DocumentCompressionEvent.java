@@ -0,0 +1,47 @@
+package com.iradraconis.shrinkify;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR-Ereignis für ein ganzes Dokument, vom Laden bis zum Speichern.
+ */
+@Name("com.iradraconis.shrinkify.DocumentCompression")
+@Label("Dokument komprimiert")
+@Category("Shrinkify")
+@StackTrace(false)
+class DocumentCompressionEvent extends jdk.jfr.Event {
+
+    @Label("Datei")
+    String file;
+
+    @Label("Bilder gefunden")
+    int imagesFound;
+
+    @Label("Bilder ersetzt")
+    int imagesRecompressed;
+
+    @Label("Laden")
+    @Timespan(Timespan.NANOSECONDS)
+    long loadTime;
+
+    @Label("Speichern")
+    @Timespan(Timespan.NANOSECONDS)
+    long saveTime;
+
+    @Label("Höchster Bildspeicher")
+    @DataAmount
+    long peakPixelBytes;
+
+    @Label("Größe vorher")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Größe nachher")
+    @DataAmount
+    long bytesOut;
+}
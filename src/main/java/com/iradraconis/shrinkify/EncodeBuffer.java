@@ -0,0 +1,70 @@
+package com.iradraconis.shrinkify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wachsender Puffer für kodierte Bilddaten, dessen Inhalt ohne Kopie wieder gelesen werden kann.
+ * {@link ByteArrayOutputStream#toByteArray()} würde die Daten jedes Mal kopieren.
+ * Puffer werden über {@link #acquire()} aus einem gemeinsamen Vorrat geholt und nach dem
+ * Übernehmen ins Dokument mit {@link #release()} zurückgegeben.
+ */
+final class EncodeBuffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    // Größere Puffer werden nicht aufbewahrt, damit einzelne große Bilder keinen Speicher binden
+    private static final int MAX_POOLED_CAPACITY = 4 * 1024 * 1024;
+    private static final int MAX_POOLED = 4 * Runtime.getRuntime().availableProcessors() + 4;
+
+    private static final ConcurrentLinkedQueue<EncodeBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private EncodeBuffer() {
+        super(INITIAL_CAPACITY);
+    }
+
+    static EncodeBuffer acquire() {
+        EncodeBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            return new EncodeBuffer();
+        }
+        POOLED.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Gibt den Puffer zurück. Danach darf er, auch über {@link #toInputStream()}, nicht mehr gelesen werden.
+     */
+    void release() {
+        if (buf.length > MAX_POOLED_CAPACITY) {
+            return;
+        }
+        reset();
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(this);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    InputStream toInputStream() {
+        return new ByteArrayInputStream(buf, 0, count);
+    }
+
+    // Überschreibt bereits geschriebene Bytes, für Ausgabeströme mit seek
+    void writeAt(long position, byte[] data, int offset, int length) {
+        int start = (int) position;
+        int overlap = Math.min(length, count - start);
+        System.arraycopy(data, offset, buf, start, overlap);
+        if (overlap < length) {
+            write(data, offset + overlap, length - overlap);
+        }
+    }
+
+    int byteAt(long position) {
+        return buf[(int) position] & 0xFF;
+    }
+}
@@ -0,0 +1,108 @@
+package com.iradraconis.shrinkify;
+
+import java.io.IOException;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+/**
+ * Ein fertig kodiertes Bild. Die Kodierung erfolgt in einem Worker-Thread;
+ * das Bildobjekt wird erst beim Zurückschreiben ins Dokument erzeugt.
+ */
+final class EncodedImage {
+
+    enum Codec {
+        JPEG, CCITT_G4, FLATE
+    }
+
+    private final Codec codec;
+    private final EncodeBuffer data;
+    private final int width;
+    private final int height;
+    private final int bitsPerComponent;
+    private final boolean gray;
+    // Nachschlagetabelle für indizierte Bilder, sonst null
+    private final byte[] palette;
+
+    private EncodedImage(Codec codec, EncodeBuffer data, int width, int height, int bitsPerComponent, boolean gray, byte[] palette) {
+        this.codec = codec;
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.bitsPerComponent = bitsPerComponent;
+        this.gray = gray;
+        this.palette = palette;
+    }
+
+    static EncodedImage jpeg(EncodeBuffer data, int width, int height, boolean gray) {
+        return new EncodedImage(Codec.JPEG, data, width, height, 8, gray, null);
+    }
+
+    // Daten im Format von CCITTFactory: Group 4, 0 = schwarz
+    static EncodedImage ccittG4(EncodeBuffer data, int width, int height) {
+        return new EncodedImage(Codec.CCITT_G4, data, width, height, 1, true, null);
+    }
+
+    static EncodedImage flate(EncodeBuffer data, int width, int height, int bitsPerComponent, boolean gray) {
+        return new EncodedImage(Codec.FLATE, data, width, height, bitsPerComponent, gray, null);
+    }
+
+    // Flate-kodierte Palettenindizes; palette enthält je Farbe 1 (grau) bzw. 3 (RGB) Bytes
+    static EncodedImage indexed(EncodeBuffer data, int width, int height, int bitsPerComponent, byte[] palette, boolean gray) {
+        return new EncodedImage(Codec.FLATE, data, width, height, bitsPerComponent, gray, palette);
+    }
+
+    Codec getCodec() {
+        return codec;
+    }
+
+    int length() {
+        return data.size();
+    }
+
+    /**
+     * Gibt den Datenpuffer zurück in den Vorrat; danach ist das Objekt nicht mehr verwendbar.
+     */
+    void release() {
+        data.release();
+    }
+
+    PDImageXObject toXObject(PDDocument document) throws IOException {
+        switch (codec) {
+            case JPEG:
+                // Wie JPEGFactory, aber Größe und Farbraum sind bekannt und die Daten werden nicht kopiert
+                return new PDImageXObject(document, data.toInputStream(), COSName.DCT_DECODE,
+                        width, height, 8, gray ? PDDeviceGray.INSTANCE : PDDeviceRGB.INSTANCE);
+            case CCITT_G4: {
+                PDImageXObject image = new PDImageXObject(document, data.toInputStream(),
+                        COSName.CCITTFAX_DECODE, width, height, 1, PDDeviceGray.INSTANCE);
+                COSDictionary decodeParms = new COSDictionary();
+                decodeParms.setInt(COSName.K, -1);
+                decodeParms.setInt(COSName.COLUMNS, width);
+                decodeParms.setInt(COSName.ROWS, height);
+                image.getCOSObject().setItem(COSName.DECODE_PARMS, decodeParms);
+                return image;
+            }
+            default: {
+                PDImageXObject image = new PDImageXObject(document, data.toInputStream(), COSName.FLATE_DECODE,
+                        width, height, bitsPerComponent, gray ? PDDeviceGray.INSTANCE : PDDeviceRGB.INSTANCE);
+                if (palette != null) {
+                    // [/Indexed Basis hival Nachschlagetabelle]
+                    COSArray indexed = new COSArray();
+                    indexed.add(COSName.INDEXED);
+                    indexed.add(gray ? COSName.DEVICEGRAY : COSName.DEVICERGB);
+                    indexed.add(COSInteger.get(palette.length / (gray ? 1 : 3) - 1));
+                    indexed.add(new COSString(palette));
+                    image.getCOSObject().setItem(COSName.COLORSPACE, indexed);
+                }
+                return image;
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.iradraconis.shrinkify;
+
+import java.io.File;
+
+/**
+ * Ergebnis der Komprimierung einer einzelnen Datei.
+ */
+public class FileResult {
+
+    private final File inputFile;
+    private final File outputFile;
+    private final long originalSize;
+    private final long compressedSize;
+    private final long durationMillis;
+    private final CompressionStats stats;
+    private final Exception error;
+    private final boolean skipped;
+
+    FileResult(File inputFile, File outputFile, long originalSize, long compressedSize, long durationMillis,
+            CompressionStats stats, Exception error) {
+        this(inputFile, outputFile, originalSize, compressedSize, durationMillis, stats, error, false);
+    }
+
+    private FileResult(File inputFile, File outputFile, long originalSize, long compressedSize, long durationMillis,
+            CompressionStats stats, Exception error, boolean skipped) {
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.originalSize = originalSize;
+        this.compressedSize = compressedSize;
+        this.durationMillis = durationMillis;
+        this.stats = stats;
+        this.error = error;
+        this.skipped = skipped;
+    }
+
+    static FileResult failed(File inputFile, long durationMillis, Exception error) {
+        return new FileResult(inputFile, null, inputFile.length(), -1, durationMillis, new CompressionStats(), error);
+    }
+
+    // Datei war laut Manifest oder Markierung bereits mit diesen Einstellungen komprimiert
+    static FileResult skipped(File inputFile, File outputFile, long originalSize, long compressedSize, long durationMillis) {
+        return new FileResult(inputFile, outputFile, originalSize, compressedSize, durationMillis, new CompressionStats(), null, true);
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    public long getOriginalSize() {
+        return originalSize;
+    }
+
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public CompressionStats getStats() {
+        return stats;
+    }
+
+    public Exception getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * true, wenn die Datei nicht erneut komprimiert wurde, weil das Ergebnis bereits vorlag.
+     */
+    public boolean isSkipped() {
+        return skipped;
+    }
+
+    public double getReductionPercent() {
+        if (originalSize <= 0 || compressedSize < 0) {
+            return 0;
+        }
+        return ((originalSize - compressedSize) / (double) originalSize) * 100;
+    }
+}
@@ -0,0 +1,420 @@
+package com.iradraconis.shrinkify;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Überwacht Verzeichnisse und komprimiert neu abgelegte PDF-Dateien ins Zielverzeichnis, bei mehreren
+ * Verzeichnissen in je einen Unterordner mit deren Namen.
+ * Dateien kommen erst in die Warteschlange, wenn sich Größe und Änderungszeit eine Weile nicht mehr
+ * geändert haben, also fertig geschrieben sind. Ist die Warteschlange voll, bleiben weitere Dateien
+ * vorgemerkt und werden nachgereicht, sobald wieder Platz ist.
+ */
+public class FolderWatcher {
+
+    public interface Listener {
+        // Wird aus einem Worker-Thread aufgerufen; latencyMillis zählt ab dem Erkennen der Datei
+        void fileFinished(FileResult result, long latencyMillis);
+    }
+
+    // Takt, in dem vorgemerkte Dateien geprüft werden
+    private static final long TICK_MILLIS = 500;
+    // Versuche für eine unveränderte Datei, die sich nicht komprimieren lässt (defekt, verschlüsselt)
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final BatchCompressor compressor;
+    private final List<Path> directories;
+    // Zielverzeichnis je überwachtem Verzeichnis
+    private final Map<Path, File> outputDirs = new HashMap<>();
+    private final Set<Path> outputPaths = new HashSet<>();
+    private final int workers;
+    private final BlockingQueue<QueuedFile> queue;
+    private long quietMillis = 2000;
+    private long rescanMillis = 30_000;
+
+    // Nur im überwachenden Thread verwendet
+    private final Map<Path, PendingFile> pending = new LinkedHashMap<>();
+    // Erfolgreich verarbeitete Dateien mit ihrem Stand; die Worker tragen ein
+    private final Map<Path, FileState> handled = new ConcurrentHashMap<>();
+    // Fehlgeschlagene Dateien; unverändert werden sie mit wachsendem Abstand nur MAX_ATTEMPTS-mal versucht
+    private final Map<Path, FailedFile> failed = new ConcurrentHashMap<>();
+    // In der Warteschlange oder in Arbeit, damit eine Datei nicht doppelt eingereiht wird
+    private final Set<Path> inProgress = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong filesQueued = new AtomicLong();
+    private final AtomicLong filesCompressed = new AtomicLong();
+    private final AtomicLong filesSkipped = new AtomicLong();
+    private final AtomicLong filesFailed = new AtomicLong();
+    private final AtomicLong deferrals = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+
+    // Größe und Änderungszeit bei der letzten Prüfung
+    private static final class FileState {
+        final long size;
+        final long modified;
+
+        FileState(long size, long modified) {
+            this.size = size;
+            this.modified = modified;
+        }
+
+        boolean sameAs(FileState other) {
+            return other != null && size == other.size && modified == other.modified;
+        }
+    }
+
+    private static final class FailedFile {
+        final FileState state;
+        final int attempts;
+        final long retryNanos;
+
+        FailedFile(FileState state, int attempts, long retryNanos) {
+            this.state = state;
+            this.attempts = attempts;
+            this.retryNanos = retryNanos;
+        }
+    }
+
+    private static final class PendingFile {
+        final long detectedNanos;
+        FileState state;
+        long lastChangeNanos;
+
+        PendingFile(long detectedNanos) {
+            this.detectedNanos = detectedNanos;
+            this.lastChangeNanos = detectedNanos;
+        }
+    }
+
+    private static final class QueuedFile {
+        final Path path;
+        final FileState state;
+        final long detectedNanos;
+        final long queuedNanos;
+
+        QueuedFile(Path path, FileState state, long detectedNanos, long queuedNanos) {
+            this.path = path;
+            this.state = state;
+            this.detectedNanos = detectedNanos;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    public FolderWatcher(CompressionSettings settings, List<File> directories, File outputDir, int workers, int queueCapacity) {
+        this.workers = Math.max(1, workers);
+        this.compressor = new BatchCompressor(settings, this.workers);
+        this.directories = new ArrayList<>();
+        Set<String> usedNames = new HashSet<>();
+        for (File directory : directories) {
+            Path path = directory.toPath().toAbsolutePath().normalize();
+            this.directories.add(path);
+            // Mehrere Verzeichnisse bekommen je einen Unterordner, sonst überschreiben sich gleichnamige Dateien
+            File target = outputDir;
+            if (directories.size() > 1) {
+                String name = path.getFileName() == null ? "Verzeichnis" : path.getFileName().toString();
+                String unique = name;
+                for (int n = 2; !usedNames.add(unique); n++) {
+                    unique = name + "_" + n;
+                }
+                target = new File(outputDir, unique);
+            }
+            outputDirs.put(path, target);
+            outputPaths.add(target.toPath().toAbsolutePath().normalize());
+        }
+        for (Path directory : this.directories) {
+            if (outputPaths.contains(directory)) {
+                // Alle Dateien dort wären eigene Ergebnisse und würden stillschweigend ignoriert
+                throw new IllegalArgumentException("Das Zielverzeichnis darf nicht überwacht werden: " + directory);
+            }
+        }
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    /**
+     * Zeit ohne Änderung an Größe und Änderungszeit, nach der eine Datei als fertig geschrieben gilt.
+     */
+    public void setQuietMillis(long quietMillis) {
+        this.quietMillis = quietMillis;
+    }
+
+    /**
+     * Abstand, in dem die Verzeichnisse zusätzlich vollständig gelesen werden. Auf Netzlaufwerken
+     * meldet der WatchService Änderungen anderer Rechner oft nicht.
+     */
+    public void setRescanMillis(long rescanMillis) {
+        this.rescanMillis = rescanMillis;
+    }
+
+    /**
+     * Überwacht die Verzeichnisse, bis der Thread unterbrochen wird. Bereits vorhandene Dateien werden
+     * beim Start ebenfalls verarbeitet; was laut Manifest schon fertig ist, wird übersprungen.
+     */
+    public void run(Listener listener) throws IOException, InterruptedException {
+        List<Thread> workerThreads = new ArrayList<>(workers);
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            for (Path directory : directories) {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+            for (int i = 1; i <= workers; i++) {
+                Thread thread = new Thread(() -> work(listener), "shrinkify-watch-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                workerThreads.add(thread);
+            }
+
+            rescan();
+            long nextRescan = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rescanMillis);
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(TICK_MILLIS, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    handleEvents(key);
+                    key = watchService.poll();
+                }
+                if (System.nanoTime() - nextRescan >= 0) {
+                    rescan();
+                    nextRescan = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rescanMillis);
+                }
+                enqueueSettledFiles();
+            }
+            throw new InterruptedException();
+        } catch (ClosedWatchServiceException e) {
+            throw new InterruptedException();
+        } finally {
+            // Dateien in der Warteschlange bleiben unverändert liegen und werden beim nächsten Start verarbeitet
+            workerThreads.forEach(Thread::interrupt);
+        }
+    }
+
+    private void handleEvents(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                rescan(); // Ereignisse verloren: alles neu lesen
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                pending.remove(path);
+                handled.remove(path);
+                failed.remove(path);
+            } else if (isCandidate(path)) {
+                pending.computeIfAbsent(path, p -> new PendingFile(System.nanoTime()));
+            }
+        }
+        if (!key.reset()) {
+            // Verzeichnis gelöscht oder nicht mehr erreichbar; das vollständige Lesen meldet es weiter
+            new NoSuchFileException(directory.toString(), null, "Verzeichnis wird nicht mehr überwacht").printStackTrace();
+        }
+    }
+
+    private void rescan() {
+        // Netzlaufwerke melden gelöschte Dateien oft nicht
+        handled.keySet().removeIf(path -> !Files.exists(path));
+        failed.keySet().removeIf(path -> !Files.exists(path));
+        for (Path directory : directories) {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(this::isCandidate)
+                        .filter(path -> isDue(path, readState(path)))
+                        .forEach(path -> pending.computeIfAbsent(path, p -> new PendingFile(System.nanoTime())));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // PDF-Dateien, aber keine eigenen Ergebnisse, falls ein Zielverzeichnis mit überwacht wird
+    private boolean isCandidate(Path path) {
+        String name = path.getFileName().toString();
+        return name.toLowerCase().endsWith(".pdf")
+                && !name.startsWith(".")
+                && !outputPaths.contains(path.getParent())
+                && Files.isRegularFile(path);
+    }
+
+    // Fertig geschriebene Dateien in die Warteschlange; ist sie voll, bleiben sie vorgemerkt
+    private void enqueueSettledFiles() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, PendingFile>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, PendingFile> entry = iterator.next();
+            Path path = entry.getKey();
+            PendingFile file = entry.getValue();
+            if (!Files.isRegularFile(path)) {
+                iterator.remove();
+                continue;
+            }
+            FileState state = readState(path);
+            if (!state.sameAs(file.state)) {
+                file.state = state;
+                file.lastChangeNanos = now;
+                continue;
+            }
+            if (now - file.lastChangeNanos < TimeUnit.MILLISECONDS.toNanos(quietMillis)
+                    || inProgress.contains(path)) {
+                continue; // Noch in Arbeit: danach erneut prüfen
+            }
+            if (!isDue(path, state)) {
+                iterator.remove(); // Unverändert seit der letzten Verarbeitung oder Wartezeit nach Fehler
+                continue;
+            }
+            inProgress.add(path);
+            if (!queue.offer(new QueuedFile(path, state, file.detectedNanos, now))) {
+                inProgress.remove(path);
+                deferrals.incrementAndGet();
+                return; // Gegendruck: erst weiter, wenn die Worker aufgeholt haben
+            }
+            filesQueued.incrementAndGet();
+            iterator.remove();
+        }
+    }
+
+    // Neu oder geändert; nach einem Fehler erst nach der Wartezeit und höchstens MAX_ATTEMPTS-mal
+    private boolean isDue(Path path, FileState state) {
+        if (state.sameAs(handled.get(path))) {
+            return false;
+        }
+        FailedFile failure = failed.get(path);
+        return failure == null || !state.sameAs(failure.state)
+                || (failure.attempts < MAX_ATTEMPTS && System.nanoTime() - failure.retryNanos >= 0);
+    }
+
+    private static FileState readState(Path path) {
+        try {
+            return new FileState(Files.size(path), Files.getLastModifiedTime(path).toMillis());
+        } catch (IOException e) {
+            return new FileState(-1, -1);
+        }
+    }
+
+    private void work(Listener listener) {
+        try {
+            while (true) {
+                QueuedFile file = queue.take();
+                busyWorkers.incrementAndGet();
+                try {
+                    totalQueueWaitNanos.addAndGet(System.nanoTime() - file.queuedNanos);
+                    FileResult result = compressor.compressFile(file.path.toFile(), outputDirs.get(file.path.getParent()));
+                    long latency = System.nanoTime() - file.detectedNanos;
+                    totalLatencyNanos.addAndGet(latency);
+                    maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                    if (result.isSuccess()) {
+                        handled.put(file.path, file.state);
+                        failed.remove(file.path);
+                    } else {
+                        handled.remove(file.path);
+                        recordFailure(file);
+                    }
+                    if (!result.isSuccess()) {
+                        filesFailed.incrementAndGet();
+                    } else if (result.isSkipped()) {
+                        filesSkipped.incrementAndGet();
+                    } else {
+                        filesCompressed.incrementAndGet();
+                    }
+                    if (listener != null) {
+                        listener.fileFinished(result, latency / 1_000_000);
+                    }
+                } finally {
+                    inProgress.remove(file.path);
+                    busyWorkers.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Wartezeit bis zum nächsten Versuch verdoppelt sich, beginnend beim Abstand des vollständigen Lesens
+    private void recordFailure(QueuedFile file) {
+        FailedFile previous = failed.get(file.path);
+        int attempts = previous != null && file.state.sameAs(previous.state) ? previous.attempts + 1 : 1;
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(rescanMillis) << (attempts - 1);
+        failed.put(file.path, new FailedFile(file.state, attempts, System.nanoTime() + delayNanos));
+    }
+
+    /**
+     * Dateien, die auf einen freien Worker warten.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    public int getBusyWorkers() {
+        return busyWorkers.get();
+    }
+
+    public long getFilesQueued() {
+        return filesQueued.get();
+    }
+
+    public long getFilesCompressed() {
+        return filesCompressed.get();
+    }
+
+    public long getFilesSkipped() {
+        return filesSkipped.get();
+    }
+
+    public long getFilesFailed() {
+        return filesFailed.get();
+    }
+
+    /**
+     * Wie oft eine fertige Datei wegen voller Warteschlange zurückgestellt wurde.
+     */
+    public long getDeferrals() {
+        return deferrals.get();
+    }
+
+    /**
+     * Mittlere Zeit vom Erkennen einer Datei bis zum fertigen Ergebnis, einschließlich Wartezeit beim Schreiben.
+     */
+    public long getAverageLatencyMillis() {
+        long finished = filesCompressed.get() + filesSkipped.get() + filesFailed.get();
+        return finished == 0 ? 0 : totalLatencyNanos.get() / finished / 1_000_000;
+    }
+
+    public long getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1_000_000;
+    }
+
+    /**
+     * Mittlere Wartezeit in der Warteschlange.
+     */
+    public long getAverageQueueWaitMillis() {
+        long finished = filesCompressed.get() + filesSkipped.get() + filesFailed.get();
+        return finished == 0 ? 0 : totalQueueWaitNanos.get() / finished / 1_000_000;
+    }
+}
@@ -0,0 +1,92 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Schätzt anhand eines groben Rasters von Stichproben, welche Kodierung für ein Bild passt,
+ * ohne das Bild mehrfach zu kodieren.
+ */
+final class ImageClassifier {
+
+    enum Kind {
+        // Fotos und Scans mit Verläufen: JPEG
+        PHOTO,
+        // Strichzeichnungen, Diagramme, Screenshots: verlustfrei mit Palette
+        GRAPHIC,
+        // Reines Schwarz/Weiß: CCITT
+        BILEVEL
+    }
+
+    // Stichproben pro Achse
+    private static final int GRID = 32;
+    // Ab diesem Helligkeitssprung zwischen Nachbarpixeln zählt eine Stelle als Kante
+    private static final int EDGE_STEP = 48;
+
+    private ImageClassifier() {
+    }
+
+    static Kind classify(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stepX = Math.max(1, width / GRID);
+        int stepY = Math.max(1, height / GRID);
+
+        Set<Integer> colors = new HashSet<>();
+        int samples = 0;
+        int graySamples = 0;
+        int blackOrWhite = 0;
+        int edges = 0;
+        for (int y = stepY / 2; y < height; y += stepY) {
+            for (int x = stepX / 2; x < width; x += stepX) {
+                int rgb = rgb(image, x, y);
+                int r = rgb >> 16;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                int luma = (r * 299 + g * 587 + b * 114) / 1000;
+
+                samples++;
+                colors.add(rgb);
+                if (Math.max(r, Math.max(g, b)) - Math.min(r, Math.min(g, b)) < 16) {
+                    graySamples++;
+                }
+                if (luma < 40 || luma > 215) {
+                    blackOrWhite++;
+                }
+                if (x + 1 < width) {
+                    int next = rgb(image, x + 1, y);
+                    int nextLuma = (((next >> 16) & 0xFF) * 299 + ((next >> 8) & 0xFF) * 587 + (next & 0xFF) * 114) / 1000;
+                    if (Math.abs(luma - nextLuma) >= EDGE_STEP) {
+                        edges++;
+                    }
+                }
+            }
+        }
+        if (samples == 0) {
+            return Kind.PHOTO;
+        }
+
+        double grayShare = graySamples / (double) samples;
+        double blackOrWhiteShare = blackOrWhite / (double) samples;
+        double edgeDensity = edges / (double) samples;
+
+        if (grayShare >= 0.98 && blackOrWhiteShare >= 0.98) {
+            return Kind.BILEVEL;
+        }
+        // Wenige Farben mit harten Kanten deuten auf Grafik statt Foto
+        if (colors.size() <= 16 || (colors.size() <= 64 && edgeDensity >= 0.02)) {
+            return Kind.GRAPHIC;
+        }
+        return Kind.PHOTO;
+    }
+
+    // Graustufen direkt aus dem Raster: getRGB rechnet sie als linearen Grauraum nach sRGB um und hellt sie auf
+    private static int rgb(BufferedImage image, int x, int y) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            int v = image.getRaster().getSample(x, y, 0);
+            return (v << 16) | (v << 8) | v;
+        }
+        return image.getRGB(x, y) & 0xFFFFFF;
+    }
+}
@@ -0,0 +1,61 @@
+package com.iradraconis.shrinkify;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR-Ereignis für ein einzelnes Bild. Die Felder werden auch ohne laufende Aufzeichnung befüllt
+ * und in die {@link CompressionStats} des Dokuments übernommen.
+ */
+@Name("com.iradraconis.shrinkify.ImageCompression")
+@Label("Bild komprimiert")
+@Category("Shrinkify")
+@StackTrace(false)
+class ImageCompressionEvent extends jdk.jfr.Event {
+
+    @Label("Breite")
+    int width;
+
+    @Label("Höhe")
+    int height;
+
+    @Label("Kodierung")
+    @Description("JPEG, CCITT_G4 oder FLATE; leer, wenn das Original bleibt")
+    String codec;
+
+    @Label("Streifenweise gelesen")
+    boolean banded;
+
+    @Label("Dekodieren")
+    @Timespan(Timespan.NANOSECONDS)
+    long decodeTime;
+
+    @Label("Umwandeln und Skalieren")
+    @Timespan(Timespan.NANOSECONDS)
+    long transformTime;
+
+    @Label("Kodieren")
+    @Timespan(Timespan.NANOSECONDS)
+    long encodeTime;
+
+    @Label("Wartezeit auf Bildspeicher")
+    @Timespan(Timespan.NANOSECONDS)
+    long budgetWaitTime;
+
+    @Label("Reservierter Bildspeicher")
+    @DataAmount
+    long pixelBytes;
+
+    @Label("Bytes vorher")
+    @DataAmount
+    long bytesIn;
+
+    @Label("Bytes nachher")
+    @DataAmount
+    long bytesOut;
+}
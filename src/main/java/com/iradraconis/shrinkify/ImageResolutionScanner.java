@@ -0,0 +1,90 @@
+package com.iradraconis.shrinkify;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorName;
+import org.apache.pdfbox.contentstream.operator.state.Concatenate;
+import org.apache.pdfbox.contentstream.operator.state.Restore;
+import org.apache.pdfbox.contentstream.operator.state.Save;
+import org.apache.pdfbox.contentstream.operator.state.SetGraphicsStateParameters;
+import org.apache.pdfbox.contentstream.operator.state.SetMatrix;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * Ermittelt aus den Inhaltsströmen der Seiten, mit welcher Auflösung (dpi) jedes Bild dargestellt wird.
+ * Wird ein Bild mehrfach verwendet, zählt die niedrigste Auflösung, also die größte Darstellung.
+ * Bilder, die nur in Kachelmustern oder Type3-Schriften vorkommen, werden nicht erfasst.
+ */
+class ImageResolutionScanner extends PDFStreamEngine {
+
+    private final Map<COSStream, Float> effectiveDpi = new IdentityHashMap<>();
+
+    ImageResolutionScanner() {
+        addOperator(new Concatenate(this));
+        addOperator(new SetGraphicsStateParameters(this));
+        addOperator(new Save(this));
+        addOperator(new Restore(this));
+        addOperator(new SetMatrix(this));
+    }
+
+    void scan(PDPage page) throws IOException {
+        processPage(page);
+        // Erscheinungsbilder der Anmerkungen werden wie auf der Seite gezeichnet
+        for (PDAnnotation annotation : page.getAnnotations()) {
+            showAnnotation(annotation);
+        }
+    }
+
+    /**
+     * Liefert die effektive Auflösung des Bildes oder 0, wenn es in keinem Inhaltsstrom gezeichnet wird.
+     */
+    float getEffectiveDpi(COSStream image) {
+        Float dpi = effectiveDpi.get(image);
+        return dpi != null ? dpi : 0;
+    }
+
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        if (!OperatorName.DRAW_OBJECT.equals(operator.getName())) {
+            super.processOperator(operator, operands);
+            return;
+        }
+        if (operands.isEmpty() || !(operands.get(0) instanceof COSName)) {
+            return;
+        }
+        PDXObject xObject;
+        try {
+            xObject = getResources().getXObject((COSName) operands.get(0));
+        } catch (IOException e) {
+            // Defektes Objekt auslassen wie beim Sammeln der Bilder, das dort auch den Fehler meldet;
+            // ein Bild darin behält seine Auflösung
+            return;
+        }
+        if (xObject instanceof PDImageXObject) {
+            PDImageXObject image = (PDImageXObject) xObject;
+            // Das Bild füllt das Einheitsquadrat; die CTM bestimmt die Größe auf der Seite in Punkt (1/72 Zoll)
+            Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+            float widthInches = Math.abs(ctm.getScalingFactorX()) / 72f;
+            float heightInches = Math.abs(ctm.getScalingFactorY()) / 72f;
+            if (widthInches <= 0 || heightInches <= 0) {
+                return;
+            }
+            float dpi = Math.min(image.getWidth() / widthInches, image.getHeight() / heightInches);
+            effectiveDpi.merge(image.getCOSObject(), dpi, Math::min);
+        } else if (xObject instanceof PDFormXObject) {
+            showForm((PDFormXObject) xObject);
+        }
+    }
+}
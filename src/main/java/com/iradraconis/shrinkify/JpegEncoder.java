@@ -0,0 +1,151 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStreamImpl;
+
+/**
+ * JPEG-Kodierung mit einem ImageWriter pro Thread. Writer, Parameter und Ausgabestrom werden
+ * zwischen den Bildern zurückgesetzt statt neu angelegt; geschrieben wird direkt in einen
+ * {@link EncodeBuffer} aus dem Vorrat, ohne den Umweg über den Cache von ImageIO.
+ */
+final class JpegEncoder {
+
+    private static final ThreadLocal<JpegEncoder> PER_THREAD = ThreadLocal.withInitial(JpegEncoder::new);
+
+    private final ImageWriter writer;
+    private final ImageWriteParam param;
+    private final BufferOutputStream output = new BufferOutputStream();
+    // Platzhalter, damit das zuletzt kodierte Bild nicht im Thread festgehalten wird
+    private static final BufferedImage PLACEHOLDER = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+
+    // Größere Zwischenbilder werden nicht im Thread gehalten
+    private static final long MAX_REUSABLE_PIXELS = 4_000_000L;
+
+    private BufferedImage bgr;
+    private final IIOImage iioImage = new IIOImage(PLACEHOLDER, null, null);
+
+    private JpegEncoder() {
+        writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    }
+
+    static EncodedImage encode(BufferedImage image, float quality, boolean gray) throws IOException {
+        return PER_THREAD.get().write(image, quality, gray);
+    }
+
+    private EncodedImage write(BufferedImage image, float quality, boolean gray) throws IOException {
+        EncodeBuffer buffer = EncodeBuffer.acquire();
+        try {
+            param.setCompressionQuality(quality);
+            output.open(buffer);
+            writer.setOutput(output);
+            iioImage.setRenderedImage(image.getType() == BufferedImage.TYPE_INT_RGB ? toBgr(image) : image);
+            writer.write(null, iioImage, param);
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            // Writer nach einem Fehler nicht weiterverwenden
+            writer.dispose();
+            PER_THREAD.remove();
+            throw e;
+        } finally {
+            iioImage.setRenderedImage(PLACEHOLDER);
+            output.open(null);
+            writer.setOutput(null);
+        }
+        return EncodedImage.jpeg(buffer, image.getWidth(), image.getHeight(), gray);
+    }
+
+    // Der Writer liest gepackte int-Pixel zeilenweise über getPixels und legt dafür je Zeile ein neues
+    // Array an; aus einem Byte-Raster kopiert er dagegen direkt. Deshalb vorher in BGR-Bytes umsetzen.
+    private BufferedImage toBgr(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage target = bgr;
+        if (target == null || target.getWidth() != width || target.getHeight() != height) {
+            target = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+            if ((long) width * height <= MAX_REUSABLE_PIXELS) {
+                bgr = target;
+            }
+        }
+        WritableRaster sourceRaster = image.getRaster();
+        int[] source = ((DataBufferInt) sourceRaster.getDataBuffer()).getData();
+        byte[] bytes = ((DataBufferByte) target.getRaster().getDataBuffer()).getData();
+        int scanline = ((SinglePixelPackedSampleModel) sourceRaster.getSampleModel()).getScanlineStride();
+        int offset = sourceRaster.getDataBuffer().getOffset();
+        int i = 0;
+        for (int y = 0; y < height; y++) {
+            int rowStart = offset + y * scanline;
+            for (int x = 0; x < width; x++) {
+                int rgb = source[rowStart + x];
+                bytes[i++] = (byte) rgb;
+                bytes[i++] = (byte) (rgb >> 8);
+                bytes[i++] = (byte) (rgb >> 16);
+            }
+        }
+        return target;
+    }
+
+    // Ausgabestrom direkt auf einen EncodeBuffer; unterstützt seek innerhalb der geschriebenen Daten
+    private static final class BufferOutputStream extends ImageOutputStreamImpl {
+
+        private EncodeBuffer buffer;
+        private final byte[] single = new byte[1];
+
+        void open(EncodeBuffer target) {
+            buffer = target;
+            streamPos = 0;
+            flushedPos = 0;
+            bitOffset = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            flushBits();
+            buffer.writeAt(streamPos, b, off, len);
+            streamPos += len;
+        }
+
+        @Override
+        public int read() throws IOException {
+            bitOffset = 0;
+            if (streamPos >= buffer.size()) {
+                return -1;
+            }
+            return buffer.byteAt(streamPos++);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            bitOffset = 0;
+            int available = (int) Math.min(len, buffer.size() - streamPos);
+            if (available <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < available; i++) {
+                b[off + i] = (byte) buffer.byteAt(streamPos++);
+            }
+            return available;
+        }
+
+        @Override
+        public long length() {
+            return buffer != null ? buffer.size() : 0;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.GraphicsEnvironment;
+import java.util.Arrays;
+
+/**
+ * Einstiegspunkt: startet die Oberfläche oder, mit {@code --cli} bzw. ohne Display,
+ * den Kommandozeilen-Modus. Die Swing-Klassen werden im Kommandozeilen-Modus nicht geladen.
+ */
+public class Launcher {
+
+    public static void main(String[] args) {
+        if (args.length > 0 && "--cli".equals(args[0])) {
+            ShrinkifyCli.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (GraphicsEnvironment.isHeadless()) {
+            ShrinkifyCli.main(args);
+        } else {
+            Shrinkify.main(args);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+/**
+ * Rendert einzelne Seiten einer Datei vor und nach der Komprimierung. Komprimiert werden nur die
+ * Bilder der angeforderten Seite, im Speicher und ohne zu speichern. Nicht threadsicher: alle Aufrufe
+ * müssen aus demselben Thread kommen.
+ */
+final class PagePreviewRenderer implements AutoCloseable {
+
+    private final File file;
+    private final PDDocument original;
+    private final PDFRenderer originalRenderer;
+    // Arbeitskopie mit den bereits komprimierten Seiten; wird bei geänderten Einstellungen neu geladen
+    private PDDocument working;
+    private PDFRenderer workingRenderer;
+    private String workingSettings;
+    private final Set<Integer> compressedPages = new HashSet<>();
+    private final Set<COSStream> compressedImages = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    PagePreviewRenderer(File file) throws IOException {
+        this.file = file;
+        this.original = Loader.loadPDF(file);
+        this.originalRenderer = new PDFRenderer(original);
+    }
+
+    int getPageCount() {
+        return original.getNumberOfPages();
+    }
+
+    /**
+     * Seitengröße in Punkt, mit Drehung.
+     */
+    PDRectangle getPageSize(int pageIndex) {
+        PDPage page = original.getPage(pageIndex);
+        PDRectangle box = page.getCropBox();
+        if (page.getRotation() % 180 != 0) {
+            return new PDRectangle(box.getHeight(), box.getWidth());
+        }
+        return box;
+    }
+
+    BufferedImage renderOriginal(int pageIndex, int width) throws IOException {
+        return originalRenderer.renderImage(pageIndex, scale(pageIndex, width));
+    }
+
+    BufferedImage renderCompressed(int pageIndex, int width, CompressionSettings settings) throws IOException {
+        String fingerprint = settings.fingerprint();
+        if (!fingerprint.equals(workingSettings)) {
+            closeWorking();
+            working = Loader.loadPDF(file);
+            workingRenderer = new PDFRenderer(working);
+            workingSettings = fingerprint;
+        }
+        if (!compressedPages.contains(pageIndex)) {
+            try {
+                new PdfCompressor(settings).compressPage(working, working.getPage(pageIndex), compressedImages);
+            } catch (IOException | RuntimeException e) {
+                // Die Seite kann halb komprimiert sein: Arbeitskopie verwerfen, beim nächsten Aufruf neu laden
+                try {
+                    closeWorking();
+                } catch (IOException closeError) {
+                    e.addSuppressed(closeError);
+                }
+                throw e;
+            }
+            compressedPages.add(pageIndex);
+        }
+        return workingRenderer.renderImage(pageIndex, scale(pageIndex, width));
+    }
+
+    private float scale(int pageIndex, int width) {
+        return width / getPageSize(pageIndex).getWidth();
+    }
+
+    private void closeWorking() throws IOException {
+        compressedPages.clear();
+        compressedImages.clear();
+        workingSettings = null;
+        if (working != null) {
+            working.close();
+            working = null;
+            workingRenderer = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeWorking();
+        original.close();
+    }
+}
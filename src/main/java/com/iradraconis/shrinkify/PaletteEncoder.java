@@ -0,0 +1,102 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.filter.Filter;
+import org.apache.pdfbox.filter.FilterFactory;
+
+/**
+ * Kodiert Bilder mit höchstens 256 Farben verlustfrei als indiziertes Bild mit Flate.
+ */
+final class PaletteEncoder {
+
+    private static final int MAX_COLORS = 256;
+
+    private PaletteEncoder() {
+    }
+
+    /**
+     * Liefert das kodierte Bild oder null, wenn das Bild mehr als 256 Farben hat.
+     */
+    static EncodedImage encode(BufferedImage image, boolean gray) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        // Offene Adressierung: Farbe -> Index in der Palette
+        int[] keys = new int[4 * MAX_COLORS];
+        int[] values = new int[keys.length];
+        Arrays.fill(values, -1);
+        int[] palette = new int[MAX_COLORS];
+        int colorCount = 0;
+
+        int[] row = new int[width];
+        byte[] indices = new byte[width * height];
+        int lastColor = -1;
+        int lastIndex = -1;
+        for (int y = 0; y < height; y++) {
+            PixelTransform.readRow(image, y, width, row);
+            for (int x = 0; x < width; x++) {
+                int color = row[x] & 0xFFFFFF;
+                if (color != lastColor) {
+                    int slot = (color * 0x9E3779B1 >>> 22) & (keys.length - 1);
+                    while (values[slot] != -1 && keys[slot] != color) {
+                        slot = (slot + 1) & (keys.length - 1);
+                    }
+                    if (values[slot] == -1) {
+                        if (colorCount == MAX_COLORS) {
+                            return null;
+                        }
+                        keys[slot] = color;
+                        values[slot] = colorCount;
+                        palette[colorCount++] = color;
+                    }
+                    lastColor = color;
+                    lastIndex = values[slot];
+                }
+                indices[y * width + x] = (byte) lastIndex;
+            }
+        }
+
+        int bitsPerComponent = colorCount <= 2 ? 1 : colorCount <= 4 ? 2 : colorCount <= 16 ? 4 : 8;
+        byte[] packed = pack(indices, width, height, bitsPerComponent);
+
+        Filter filter = FilterFactory.INSTANCE.getFilter(COSName.FLATE_DECODE);
+        EncodeBuffer out = EncodeBuffer.acquire();
+        filter.encode(new ByteArrayInputStream(packed), out, new COSDictionary(), 0);
+
+        // Nachschlagetabelle der Palette: ein Byte je Komponente und Farbe
+        int components = gray ? 1 : 3;
+        byte[] lookup = new byte[colorCount * components];
+        for (int i = 0; i < colorCount; i++) {
+            int color = palette[i];
+            if (gray) {
+                lookup[i] = (byte) (color & 0xFF);
+            } else {
+                lookup[i * 3] = (byte) (color >> 16);
+                lookup[i * 3 + 1] = (byte) (color >> 8);
+                lookup[i * 3 + 2] = (byte) color;
+            }
+        }
+        return EncodedImage.indexed(out, width, height, bitsPerComponent, lookup, gray);
+    }
+
+    private static byte[] pack(byte[] indices, int width, int height, int bitsPerComponent) {
+        if (bitsPerComponent == 8) {
+            return indices;
+        }
+        int pixelsPerByte = 8 / bitsPerComponent;
+        int rowBytes = (width + pixelsPerByte - 1) / pixelsPerByte;
+        byte[] packed = new byte[rowBytes * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int shift = 8 - bitsPerComponent * (x % pixelsPerByte + 1);
+                packed[y * rowBytes + x / pixelsPerByte] |= (byte) ((indices[y * width + x] & 0xFF) << shift);
+            }
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,1231 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDAbstractPattern;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceDictionary;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceEntry;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+
+/**
+ * Komprimiert die Bilder eines einzelnen PDF-Dokuments.
+ * Enthält keinen UI-Code, damit die Klasse auch aus Worker-Threads verwendet werden kann.
+ */
+public class PdfCompressor {
+
+    // Kleinere Bildströme lohnen das Neukodieren nicht (JPEG-Header allein ca. 600 Byte)
+    private static final long MIN_STREAM_LENGTH = 1024;
+    // Originale mit weniger Bytes pro Zielpixel sind bereits kompakter als ein neues JPEG
+    private static final double MIN_BYTES_PER_TARGET_PIXEL = 0.05;
+
+    // Zielgrößenmodus: Grenzen der Suche nach Qualität und Auflösung
+    private static final float MIN_TARGET_QUALITY = 0.05f;
+    private static final float PREFERRED_TARGET_QUALITY = 0.3f;
+    private static final float PREFERRED_TARGET_SCALE = 0.5f;
+    private static final float MIN_TARGET_SCALE = 0.1f;
+    private static final float TARGET_SCALE_STEP = 0.75f;
+    private static final int TARGET_QUALITY_STEPS = 5;
+    // Speicherdurchgänge, falls die geschätzte Größe zu knapp war
+    private static final int MAX_TARGET_ROUNDS = 3;
+
+    // Eintrag im Dokumentinfo-Verzeichnis mit den Einstellungen der Komprimierung
+    static final String MARKER_KEY = "ShrinkifySettings";
+
+    // Stichproben je Dokument für die Schätzung
+    private static final int ESTIMATE_SAMPLES = 6;
+
+    // Gemeinsamer Pool für die Bildverarbeitung aller gleichzeitig laufenden Dokumente
+    private static final ForkJoinPool IMAGE_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    private final CompressionSettings settings;
+    private boolean skipIfMarked;
+    // Wird beim Abbruch gesetzt; laufende Bildaufgaben beenden sich am nächsten Prüfpunkt, wartende sofort.
+    // Eine Instanz verarbeitet immer nur ein Dokument zur Zeit.
+    private volatile boolean cancelled;
+    // Von außen über cancel() gesetzt; gilt für alle weiteren Aufrufe
+    private volatile boolean aborted;
+
+    public PdfCompressor(CompressionSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Legt fest, ob Dateien mit der Markierung dieser Einstellungen unverändert bleiben. Die Zieldatei
+     * wird dann nicht geschrieben, und {@link CompressionStats#isAlreadyCompressed()} liefert true.
+     */
+    public void setSkipIfMarked(boolean skipIfMarked) {
+        this.skipIfMarked = skipIfMarked;
+    }
+
+    /**
+     * Bricht die laufende und alle weiteren Bildverarbeitungen dieser Instanz ab, ohne den Thread zu
+     * unterbrechen; ein Interrupt würde den Dateikanal von PDFBox schließen. Die Ergebnisse sind danach
+     * unbrauchbar und müssen verworfen werden. Darf aus jedem Thread aufgerufen werden.
+     */
+    public void cancel() {
+        aborted = true;
+        cancelled = true;
+    }
+
+    // Ein Bild, alle Stellen, an denen es verwendet wird, und das Ergebnis seiner Komprimierung
+    private static class ImageJob {
+        final PDImageXObject imageObject;
+        final List<PDResources> resources = new ArrayList<>();
+        final List<COSName> xObjectNames = new ArrayList<>();
+        // Alle Objekte, die zu diesem Bild zusammengeführt wurden
+        final List<COSStream> streams = new ArrayList<>();
+        // Länge des ursprünglichen, kodierten Bildstroms
+        final long originalLength;
+        // Skalierungsfaktor für dieses Bild; 0 bedeutet, dass das Bild nicht neu kodiert wird
+        float resolutionScale;
+        // true, wenn eine Verwendung auf ein anderes Objekt mit gleichem Inhalt verweist
+        boolean hasContentDuplicates;
+        EncodedImage encodedImage;
+        // Nur im Zielgrößenmodus: umgewandelte Pixel für alle Versuche und die aufsummierten Zeiten
+        BufferedImage pixels;
+        // Nur im Zielgrößenmodus: Dekodieren ist einmal fehlgeschlagen, das Bild bleibt in allen Versuchen unverändert
+        boolean decodeFailed;
+        ImageCompressionEvent event;
+
+        ImageJob(PDImageXObject imageObject, float resolutionScale) {
+            this.imageObject = imageObject;
+            this.originalLength = imageObject.getCOSObject().getLength();
+            this.resolutionScale = resolutionScale;
+        }
+
+        void addReference(PDResources resources, COSName xObjectName) {
+            this.resources.add(resources);
+            this.xObjectNames.add(xObjectName);
+        }
+    }
+
+    public CompressionStats compressPDFWithPDFBox(File inputFile, File outputFile) throws IOException {
+        CompressionStats stats = new CompressionStats();
+        DocumentCompressionEvent event = new DocumentCompressionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long loadNanos;
+        long saveNanos;
+        try (PDDocument document = loadDocument(inputFile)) {
+            loadNanos = System.nanoTime() - start;
+            stats.setLoadNanos(loadNanos);
+            if (skipIfMarked && settings.fingerprint().equals(
+                    document.getDocumentInformation().getCustomMetadataValue(MARKER_KEY))) {
+                stats.setAlreadyCompressed(true);
+                return stats;
+            }
+
+            // 1. Seiten in einem Thread durchlaufen und Bilder sammeln
+            List<ImageJob> jobs = collectImageJobs(document);
+            stats.setImagesFound(jobs.size());
+            // Markierung, damit das Ergebnis beim Überschreiben nicht erneut komprimiert wird
+            document.getDocumentInformation().setCustomMetadataValue(MARKER_KEY, settings.fingerprint());
+
+            if (settings.getTargetSizeBytes() > 0) {
+                // 2. und 3. so oft wiederholen, bis das Dokument unter die Zielgröße passt
+                saveNanos = compressToTargetSize(document, jobs, inputFile.length(), outputFile, stats);
+            } else {
+                // 2. Bilder parallel dekodieren, umwandeln und kodieren;
+                // 3. fertige Bilder in diesem Thread zurück ins Dokument schreiben
+                processImageJobs(document, jobs, stats);
+
+                start = System.nanoTime();
+                CompactWriter.save(document, outputFile, stats);
+                saveNanos = System.nanoTime() - start;
+            }
+            stats.setSaveNanos(saveNanos);
+        }
+
+        if (event.shouldCommit()) {
+            event.file = inputFile.getPath();
+            event.imagesFound = stats.getImagesFound();
+            event.imagesRecompressed = stats.getImagesRecompressed();
+            event.loadTime = loadNanos;
+            event.saveTime = saveNanos;
+            event.peakPixelBytes = stats.getPeakPixelBytes();
+            event.bytesIn = inputFile.length();
+            event.bytesOut = outputFile.length();
+            event.commit();
+        }
+        return stats;
+    }
+
+    /**
+     * Schätzt Größe und Dauer der Komprimierung, ohne die Datei zu schreiben. Die Bilder werden nach
+     * ihrer Größe in Schichten eingeteilt; aus jeder Schicht wird ein Bild komprimiert und dessen
+     * Verhältnis auf die übrigen Bilder der Schicht übertragen. Der Zielgrößenmodus wird nicht berücksichtigt.
+     */
+    public SizeEstimate estimate(File inputFile) throws IOException {
+        long inputLength = inputFile.length();
+        long start = System.nanoTime();
+        try (PDDocument document = loadDocument(inputFile)) {
+            long loadNanos = System.nanoTime() - start;
+            List<ImageJob> jobs = collectImageJobs(document);
+
+            // Duplikate entfallen in jedem Fall
+            long estimatedSize = inputLength;
+            List<ImageJob> candidates = new ArrayList<>();
+            for (ImageJob job : jobs) {
+                estimatedSize -= job.originalLength * (job.streams.size() - 1);
+                if (job.resolutionScale > 0) {
+                    candidates.add(job);
+                }
+            }
+            candidates.sort(Comparator.comparingLong(job -> job.originalLength));
+
+            // Je Schicht das mittlere Bild als Stichprobe
+            int strata = Math.min(ESTIMATE_SAMPLES, candidates.size());
+            List<ImageJob> samples = new ArrayList<>(strata);
+            for (int i = 0; i < strata; i++) {
+                int from = i * candidates.size() / strata;
+                int to = (i + 1) * candidates.size() / strata;
+                samples.add(candidates.get((from + to) / 2));
+            }
+            Map<ImageJob, long[]> sampleResults = Collections.synchronizedMap(new IdentityHashMap<>());
+            CompressionStats stats = new CompressionStats();
+            runForEach(samples, job -> {
+                long sampleStart = System.nanoTime();
+                EncodedImage encodedImage = compressImage(document, job, stats, new ImageCompressionEvent());
+                long length = job.originalLength;
+                if (encodedImage != null) {
+                    length = Math.min(length, encodedImage.length());
+                    encodedImage.release();
+                }
+                sampleResults.put(job, new long[] {length, System.nanoTime() - sampleStart});
+                return null;
+            });
+
+            long imageNanos = 0;
+            for (int i = 0; i < strata; i++) {
+                int from = i * candidates.size() / strata;
+                int to = (i + 1) * candidates.size() / strata;
+                ImageJob sample = samples.get(i);
+                // Nicht lesbare Stichprobe: Schicht bleibt unverändert
+                long[] result = sampleResults.getOrDefault(sample, new long[] {sample.originalLength, 0});
+                double sizeRatio = (double) result[0] / sample.originalLength;
+                double nanosPerPixel = (double) result[1] / pixels(sample);
+                for (ImageJob job : candidates.subList(from, to)) {
+                    estimatedSize += Math.round(job.originalLength * sizeRatio) - job.originalLength;
+                    imageNanos += Math.round(pixels(job) * nanosPerPixel);
+                }
+            }
+
+            // Bilder laufen parallel; Speichern dauert etwa so lange wie Laden
+            long estimatedNanos = 2 * loadNanos + imageNanos / IMAGE_POOL.getParallelism();
+            return new SizeEstimate(inputFile, inputLength, estimatedSize, estimatedNanos / 1_000_000,
+                    jobs.size(), samples.size());
+        }
+    }
+
+    private static long pixels(ImageJob job) {
+        return Math.max(1, (long) job.imageObject.getWidth() * job.imageObject.getHeight());
+    }
+
+    /**
+     * Komprimiert nur die Bilder einer Seite des geladenen Dokuments, etwa für die Vorschau.
+     * Bilder in {@code done} wurden bereits auf einer anderen Seite bearbeitet und bleiben, wie sie sind;
+     * die Bilder dieser Seite kommen danach hinzu. Der Zielgrößenmodus wird nicht berücksichtigt.
+     */
+    void compressPage(PDDocument document, PDPage page, Set<COSStream> done) throws IOException {
+        List<ImageJob> jobs = collectImageJobs(Collections.singletonList(page), done);
+        processImageJobs(document, jobs, new CompressionStats());
+        for (ImageJob job : jobs) {
+            done.addAll(job.streams);
+        }
+    }
+
+    private PDDocument loadDocument(File inputFile) throws IOException {
+        long budget = settings.getMemoryBudgetBytes();
+        if (budget <= 0) {
+            return Loader.loadPDF(inputFile);
+        }
+        // Neue und geänderte Ströme oberhalb des Budgets in eine temporäre Datei auslagern
+        return Loader.loadPDF(inputFile, MemoryUsageSetting.setupMixed(budget).streamCache);
+    }
+
+    private static void applyJob(PDDocument document, ImageJob job, CompressionStats stats) {
+        PDImageXObject replacement;
+        if (job.encodedImage != null) {
+            try {
+                replacement = job.encodedImage.toXObject(document);
+                stats.incrementImagesRecompressed();
+            } catch (Exception e) {
+                e.printStackTrace();
+                replacement = job.imageObject;
+            }
+            // Die kodierten Daten liegen jetzt im Dokument
+            job.encodedImage.release();
+            job.encodedImage = null;
+        } else if (job.hasContentDuplicates) {
+            // Duplikate zumindest auf das gemeinsame Original verweisen lassen
+            replacement = job.imageObject;
+        } else {
+            return;
+        }
+        // Alle Verwendungen zeigen auf dasselbe neue Bild
+        for (int i = 0; i < job.resources.size(); i++) {
+            job.resources.get(i).put(job.xObjectNames.get(i), replacement);
+        }
+    }
+
+    private List<ImageJob> collectImageJobs(PDDocument document) throws IOException {
+        return collectImageJobs(document.getPages(), Collections.emptySet());
+    }
+
+    // Bilder in skip wurden bereits bearbeitet und werden nicht erneut gesammelt
+    private List<ImageJob> collectImageJobs(Iterable<PDPage> pages, Set<COSStream> skip) throws IOException {
+        List<ImageJob> jobs = new ArrayList<>();
+        // Bilder, die über dasselbe Objekt mehrfach verwendet werden
+        Map<COSStream, ImageJob> jobsByStream = new IdentityHashMap<>();
+        // Bilder mit identischem Inhalt in verschiedenen Objekten
+        Map<String, ImageJob> jobsByContent = new HashMap<>();
+        // Nur im Modus Ziel-dpi werden die Inhaltsströme ausgewertet
+        ImageResolutionScanner resolutionScanner = settings.getTargetDpi() > 0 ? new ImageResolutionScanner() : null;
+        // Jedes Ressourcen-Verzeichnis nur einmal, auch wenn Seiten oder Formulare es teilen oder zyklisch verweisen
+        Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<PDResources> pending = new ArrayDeque<>();
+
+        for (PDPage page : pages) {
+            if (resolutionScanner != null) {
+                resolutionScanner.scan(page);
+            }
+            enqueueResources(page.getResources(), visited, pending);
+            for (PDAnnotation annotation : page.getAnnotations()) {
+                enqueueAppearances(annotation.getAppearance(), visited, pending);
+            }
+
+            while (!pending.isEmpty()) {
+                PDResources resources = pending.pop();
+                for (COSName xObjectName : resources.getXObjectNames()) {
+                    PDXObject xObject;
+                    try {
+                        xObject = resources.getXObject(xObjectName);
+                    } catch (IOException e) {
+                        e.printStackTrace(); // Defektes Objekt auslassen, der Rest des Dokuments wird trotzdem bearbeitet
+                        continue;
+                    }
+
+                    if (xObject instanceof PDFormXObject) {
+                        // Formulare enthalten eigene Ressourcen mit weiteren Bildern
+                        enqueueResources(((PDFormXObject) xObject).getResources(), visited, pending);
+                        continue;
+                    }
+                    if (!(xObject instanceof PDImageXObject)) {
+                        continue;
+                    }
+                    PDImageXObject imageObject = (PDImageXObject) xObject;
+
+                    // Prüfen der Bilddimensionen vor dem Laden des Bildes
+                    int imageWidth = imageObject.getWidth();
+                    int imageHeight = imageObject.getHeight();
+
+                    // Skip if dimensions are invalid
+                    if (imageWidth <= 1 || imageHeight <= 1 || skip.contains(imageObject.getCOSObject())) {
+                        continue; // Bild überspringen
+                    }
+
+                    ImageJob job = jobsByStream.get(imageObject.getCOSObject());
+                    if (job == null && settings.isDeduplicateByContent()) {
+                        String contentKey = contentKey(imageObject);
+                        job = jobsByContent.get(contentKey);
+                        if (job != null) {
+                            job.hasContentDuplicates = true;
+                        } else {
+                            job = new ImageJob(imageObject, settings.getResolutionScale());
+                            jobsByContent.put(contentKey, job);
+                            jobs.add(job);
+                        }
+                        jobsByStream.put(imageObject.getCOSObject(), job);
+                        job.streams.add(imageObject.getCOSObject());
+                    } else if (job == null) {
+                        job = new ImageJob(imageObject, settings.getResolutionScale());
+                        jobsByStream.put(imageObject.getCOSObject(), job);
+                        job.streams.add(imageObject.getCOSObject());
+                        jobs.add(job);
+                    }
+                    job.addReference(resources, xObjectName);
+                }
+                enqueueNestedResources(resources, visited, pending);
+            }
+        }
+
+        for (ImageJob job : jobs) {
+            if (resolutionScanner != null) {
+                job.resolutionScale = targetDpiScale(job, resolutionScanner);
+            }
+            if (job.resolutionScale > 0 && !isWorthRecompressing(job)) {
+                job.resolutionScale = 0;
+            }
+        }
+        return jobs;
+    }
+
+    private static void enqueueResources(PDResources resources, Set<COSDictionary> visited, Deque<PDResources> pending) {
+        if (resources != null && visited.add(resources.getCOSObject())) {
+            pending.push(resources);
+        }
+    }
+
+    private static void enqueueResources(COSDictionary resources, Set<COSDictionary> visited, Deque<PDResources> pending) {
+        if (resources != null && visited.add(resources)) {
+            pending.push(new PDResources(resources));
+        }
+    }
+
+    // Ressourcen von Kachelmustern, Type3-Schriften und Soft-Mask-Gruppen. Gelesen wird direkt aus den
+    // Verzeichnissen, damit keine Schriftdateien geparst werden müssen.
+    private static void enqueueNestedResources(PDResources resources, Set<COSDictionary> visited, Deque<PDResources> pending) {
+        COSDictionary patterns = resources.getCOSObject().getCOSDictionary(COSName.PATTERN);
+        if (patterns != null) {
+            for (COSName name : patterns.keySet()) {
+                COSDictionary pattern = patterns.getCOSDictionary(name);
+                if (pattern != null && pattern.getInt(COSName.PATTERN_TYPE) == PDAbstractPattern.TYPE_TILING_PATTERN) {
+                    enqueueResources(pattern.getCOSDictionary(COSName.RESOURCES), visited, pending);
+                }
+            }
+        }
+        COSDictionary fonts = resources.getCOSObject().getCOSDictionary(COSName.FONT);
+        if (fonts != null) {
+            for (COSName name : fonts.keySet()) {
+                COSDictionary font = fonts.getCOSDictionary(name);
+                if (font != null && COSName.TYPE3.equals(font.getCOSName(COSName.SUBTYPE))) {
+                    enqueueResources(font.getCOSDictionary(COSName.RESOURCES), visited, pending);
+                }
+            }
+        }
+        COSDictionary extGStates = resources.getCOSObject().getCOSDictionary(COSName.EXT_G_STATE);
+        if (extGStates != null) {
+            for (COSName name : extGStates.keySet()) {
+                COSDictionary extGState = extGStates.getCOSDictionary(name);
+                COSDictionary softMask = extGState != null ? extGState.getCOSDictionary(COSName.SMASK) : null;
+                COSDictionary group = softMask != null ? softMask.getCOSDictionary(COSName.G) : null;
+                if (group != null) {
+                    enqueueResources(group.getCOSDictionary(COSName.RESOURCES), visited, pending);
+                }
+            }
+        }
+    }
+
+    // Normal-, Rollover- und Down-Erscheinungsbild, jeweils auch mit mehreren Zuständen
+    private static void enqueueAppearances(PDAppearanceDictionary appearance, Set<COSDictionary> visited,
+            Deque<PDResources> pending) {
+        if (appearance == null) {
+            return;
+        }
+        for (PDAppearanceEntry entry : new PDAppearanceEntry[] {appearance.getNormalAppearance(),
+                appearance.getRolloverAppearance(), appearance.getDownAppearance()}) {
+            if (entry == null) {
+                continue;
+            }
+            if (entry.isStream()) {
+                enqueueResources(entry.getAppearanceStream().getResources(), visited, pending);
+            } else if (entry.isSubDictionary()) {
+                for (PDAppearanceStream stream : entry.getSubDictionary().values()) {
+                    enqueueResources(stream.getResources(), visited, pending);
+                }
+            }
+        }
+    }
+
+    // Schnelle Vorprüfung ohne Dekodieren: Bilder, die durch JPEG kaum kleiner werden, auslassen
+    private boolean isWorthRecompressing(ImageJob job) {
+        PDImageXObject imageObject = job.imageObject;
+        // Masken und Bitonal-Bilder sind als JPEG größer und verlieren ihre Bedeutung
+        if (imageObject.isStencil() || imageObject.getBitsPerComponent() == 1) {
+            return false;
+        }
+        List<COSName> filters = imageObject.getStream().getFilters();
+        if (filters.contains(COSName.CCITTFAX_DECODE) || filters.contains(COSName.JBIG2_DECODE)) {
+            return false;
+        }
+        if (job.originalLength < MIN_STREAM_LENGTH) {
+            return false;
+        }
+        if (settings.getTargetSizeBytes() > 0) {
+            return true; // Die Auflösung wird erst bei der Suche festgelegt
+        }
+        double targetPixels = (double) imageObject.getWidth() * imageObject.getHeight()
+                * job.resolutionScale * job.resolutionScale;
+        return job.originalLength / targetPixels >= MIN_BYTES_PER_TARGET_PIXEL;
+    }
+
+    // Skalierung auf die Ziel-Auflösung; 0, wenn das Bild bereits klein genug ist oder nicht gezeichnet wird
+    private float targetDpiScale(ImageJob job, ImageResolutionScanner resolutionScanner) {
+        float dpi = 0;
+        for (COSStream stream : job.streams) {
+            float streamDpi = resolutionScanner.getEffectiveDpi(stream);
+            if (streamDpi > 0 && (dpi == 0 || streamDpi < dpi)) {
+                dpi = streamDpi;
+            }
+        }
+        if (dpi <= settings.getTargetDpi()) {
+            return 0;
+        }
+        return settings.getTargetDpi() / dpi;
+    }
+
+    // Hash über Rohdaten und das ganze Bildwörterbuch ohne /Length; gleiche Hashes bedeuten gleiches Bild.
+    // Dazu zählen auch /StructParent, /Intent, /Metadata und die Ebene (/OC).
+    private static String contentKey(PDImageXObject imageObject) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        updateDigest(digest, imageObject.getCOSObject(), Collections.newSetFromMap(new IdentityHashMap<>()));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Verweise werden über ihren Inhalt verglichen, nicht über die Objektnummer. Ausnahme sind Ebenen:
+    // zwei gleich benannte Ebenen sind trotzdem verschiedene Ebenen.
+    private static void updateDigest(MessageDigest digest, COSBase base, Set<COSBase> visited) throws IOException {
+        if (base instanceof COSObject) {
+            base = ((COSObject) base).getObject();
+        }
+        if (base == null || !visited.add(base)) {
+            digest.update((byte) 0);
+            return;
+        }
+        if (base instanceof COSDictionary) {
+            COSDictionary dictionary = (COSDictionary) base;
+            for (COSName key : new TreeSet<>(dictionary.keySet())) {
+                if (base instanceof COSStream && COSName.LENGTH.equals(key)) {
+                    continue;
+                }
+                digest.update(key.getName().getBytes(StandardCharsets.US_ASCII));
+                COSBase item = dictionary.getItem(key);
+                if (COSName.OC.equals(key) && item instanceof COSObject && item.getKey() != null) {
+                    digest.update(item.getKey().toString().getBytes(StandardCharsets.US_ASCII));
+                } else {
+                    updateDigest(digest, item, visited);
+                }
+            }
+        } else if (base instanceof COSArray) {
+            for (COSBase item : (COSArray) base) {
+                updateDigest(digest, item, visited);
+            }
+        } else {
+            digest.update(base.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (base instanceof COSStream) {
+            try (InputStream in = new DigestInputStream(((COSStream) base).createRawInputStream(), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+    }
+
+    private void processImageJobs(PDDocument document, List<ImageJob> jobs, CompressionStats stats) throws IOException {
+        cancelled = aborted;
+        CompletionService<ImageJob> completionService = new ExecutorCompletionService<>(IMAGE_POOL);
+        List<Future<ImageJob>> futures = new ArrayList<>(jobs.size());
+        for (ImageJob job : jobs) {
+            if (job.resolutionScale <= 0) {
+                continue; // Bild bleibt unverändert und wird nicht dekodiert
+            }
+            futures.add(completionService.submit(() -> {
+                if (cancelled) {
+                    return job;
+                }
+                ImageCompressionEvent event = new ImageCompressionEvent();
+                event.begin();
+                event.bytesIn = job.originalLength;
+                event.bytesOut = job.originalLength;
+                EncodedImage encodedImage = compressImage(document, job, stats, event);
+                // Original behalten, wenn das neue Bild nicht kleiner ist
+                if (encodedImage != null && encodedImage.length() < job.originalLength) {
+                    job.encodedImage = encodedImage;
+                    event.codec = encodedImage.getCodec().name();
+                    event.bytesOut = encodedImage.length();
+                } else if (encodedImage != null) {
+                    encodedImage.release();
+                }
+                event.commit();
+                stats.addImage(event);
+                return job;
+            }));
+        }
+
+        // Fertige Bilder sofort übernehmen, damit die kodierten Daten nicht bis zum Schluss im Speicher bleiben
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                ImageJob job = completionService.take().get();
+                synchronized (document) {
+                    applyJob(document, job, stats);
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelAndAwait(futures);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Komprimierung abgebrochen");
+        } catch (ExecutionException e) {
+            cancelAndAwait(futures);
+            throw new IOException(e.getCause());
+        }
+
+        // Nicht neu kodierte Bilder mit Duplikaten
+        for (ImageJob job : jobs) {
+            if (job.resolutionScale <= 0) {
+                applyJob(document, job, stats);
+            }
+        }
+    }
+
+    // Ergebnis eines Kodierversuchs im Zielgrößenmodus: ein Bild je Kandidat, null für das Original
+    private static class TargetAttempt {
+        final float quality;
+        final float scale;
+        final EncodedImage[] encodedImages;
+        long estimatedSize;
+
+        TargetAttempt(float quality, float scale, int size) {
+            this.quality = quality;
+            this.scale = scale;
+            this.encodedImages = new EncodedImage[size];
+        }
+
+        void release() {
+            for (EncodedImage encodedImage : encodedImages) {
+                if (encodedImage != null) {
+                    encodedImage.release();
+                }
+            }
+        }
+    }
+
+    // Zielgrößenmodus: Jedes Bild wird nur einmal dekodiert und umgewandelt. Die Suche nach Qualität und
+    // Auflösung kodiert danach nur noch und schätzt die Dateigröße; gespeichert wird erst das Ergebnis.
+    // Liegt die gespeicherte Datei doch über dem Ziel, wird mit entsprechend kleinerem Ziel erneut gesucht.
+    private long compressToTargetSize(PDDocument document, List<ImageJob> jobs, long inputLength, File outputFile,
+            CompressionStats stats) throws IOException {
+        List<ImageJob> candidates = new ArrayList<>();
+        // Duplikate entfallen in jedem Fall
+        long baseSize = inputLength;
+        for (ImageJob job : jobs) {
+            baseSize -= job.originalLength * (job.streams.size() - 1);
+            if (job.resolutionScale > 0) {
+                candidates.add(job);
+            }
+        }
+
+        // Die Pixel aller Kandidaten bleiben nur im Speicher, wenn sie zusammen mit der Arbeitsfläche der
+        // Bild-Threads höchstens das halbe Budget belegen; sonst wird für jeden Versuch neu dekodiert.
+        // Die Reservierung deckt dann auch das Dekodieren und Kodieren ab, damit kein Thread mit gehaltenem
+        // Speicher auf weiteren wartet.
+        PixelBudget.Reservation cacheReservation = null;
+        long cacheBytes = cacheBytes(document, candidates);
+        if (cacheBytes <= PixelBudget.shared().getCapacityBytes() / 2) {
+            try {
+                cacheReservation = reserve(cacheBytes, stats, new ImageCompressionEvent());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Komprimierung abgebrochen");
+            }
+        }
+        try {
+            if (cacheReservation != null) {
+                runForEach(candidates, job -> cachePixels(document, job, stats));
+            }
+            return searchAndSave(document, jobs, candidates, baseSize, outputFile, stats);
+        } finally {
+            for (ImageJob job : candidates) {
+                job.pixels = null;
+            }
+            if (cacheReservation != null) {
+                release(cacheReservation, stats);
+            }
+        }
+    }
+
+    private long searchAndSave(PDDocument document, List<ImageJob> jobs, List<ImageJob> candidates, long baseSize,
+            File outputFile, CompressionStats stats) throws IOException {
+        long targetSize = settings.getTargetSizeBytes();
+        long budget = targetSize;
+        long saveNanos = 0;
+        for (int round = 0; round < MAX_TARGET_ROUNDS; round++) {
+            TargetAttempt attempt = searchTargetSize(document, candidates, baseSize, budget, stats);
+            stats.setChosenQuality(attempt.quality);
+            stats.setChosenScale(attempt.scale);
+
+            synchronized (document) {
+                stats.resetImagesRecompressed();
+                for (int i = 0; i < candidates.size(); i++) {
+                    ImageJob job = candidates.get(i);
+                    job.encodedImage = attempt.encodedImages[i];
+                    if (job.encodedImage == null && round > 0) {
+                        // Im vorigen Durchgang ersetztes Bild wieder auf das Original zurücksetzen
+                        job.hasContentDuplicates = true;
+                    }
+                    job.event.codec = job.encodedImage != null ? job.encodedImage.getCodec().name() : null;
+                    job.event.bytesOut = job.encodedImage != null ? job.encodedImage.length() : job.originalLength;
+                    applyJob(document, job, stats);
+                }
+                if (round == 0) {
+                    for (ImageJob job : jobs) {
+                        if (job.resolutionScale <= 0) {
+                            applyJob(document, job, stats);
+                        }
+                    }
+                }
+            }
+
+            long start = System.nanoTime();
+            CompactWriter.save(document, outputFile, stats);
+            saveNanos += System.nanoTime() - start;
+
+            // Abweichung der Schätzung beim nächsten Versuch vom Ziel abziehen
+            long actualSize = outputFile.length();
+            if (actualSize <= targetSize || attempt.estimatedSize > budget) {
+                break; // passt, oder kleiner geht es ohnehin nicht
+            }
+            budget -= actualSize - attempt.estimatedSize;
+        }
+
+        for (ImageJob job : candidates) {
+            job.event.commit();
+            stats.addImage(job.event);
+        }
+        return saveNanos;
+    }
+
+    // Umgewandelte Pixel aller Kandidaten plus je Bild-Thread Platz für die größte Rohdatenkopie samt Dekodieren
+    // und Kodieren
+    private long cacheBytes(PDDocument document, List<ImageJob> candidates) {
+        long cached = 0;
+        long work = 0;
+        synchronized (document) {
+            for (ImageJob job : candidates) {
+                cached += targetBytes(job.imageObject, job.resolutionScale);
+                work = Math.max(work, DetachedImages.copiedBytes(job.imageObject)
+                        + estimateBytes(job.imageObject, job.resolutionScale, 1));
+            }
+        }
+        return cached + work * Math.min(candidates.size(), IMAGE_POOL.getParallelism());
+    }
+
+    // Dekodiert und wandelt ein Bild in der eingestellten Auflösung um und hält das Ergebnis für alle Versuche.
+    // Ist reserve gesetzt, gilt die Reservierung bis close(); sonst ist der Speicher bereits reserviert.
+    private DecodedImage decodeForTarget(PDDocument document, ImageJob job, boolean reserve, CompressionStats stats)
+            throws InterruptedException {
+        if (job.event == null) {
+            job.event = new ImageCompressionEvent();
+            job.event.begin();
+            job.event.bytesIn = job.originalLength;
+            job.event.bytesOut = job.originalLength;
+        }
+        ImageCompressionEvent timing = new ImageCompressionEvent();
+        DecodedImage decoded = decodeJob(document, job, false, reserve, stats, timing);
+        job.event.width = timing.width;
+        job.event.height = timing.height;
+        job.event.decodeTime += timing.decodeTime;
+        job.event.transformTime += timing.transformTime;
+        job.event.budgetWaitTime += timing.budgetWaitTime;
+        job.event.pixelBytes = Math.max(job.event.pixelBytes, timing.pixelBytes);
+        job.event.banded |= timing.banded;
+        return decoded;
+    }
+
+    private Object cachePixels(PDDocument document, ImageJob job, CompressionStats stats) throws InterruptedException {
+        try (DecodedImage decoded = decodeForTarget(document, job, false, stats)) {
+            job.pixels = decoded != null ? decoded.image : null;
+            job.decodeFailed = decoded == null;
+        }
+        return null;
+    }
+
+    // Sucht zuerst die Auflösung, bei der die Mindestqualität passt, dann binär die höchste passende Qualität.
+    // Bis zur halben Auflösung wird eher verkleinert als die Qualität unter PREFERRED_TARGET_QUALITY gesenkt.
+    private TargetAttempt searchTargetSize(PDDocument document, List<ImageJob> candidates, long baseSize, long budget,
+            CompressionStats stats) throws IOException {
+        float maxQuality = Math.max(MIN_TARGET_QUALITY, settings.getImageQuality());
+        float minQuality = Math.min(maxQuality, PREFERRED_TARGET_QUALITY);
+        float scale = 1.0f;
+        while (true) {
+            TargetAttempt best = encodeAttempt(document, candidates, maxQuality, scale, baseSize, stats);
+            if (best.estimatedSize <= budget) {
+                return best;
+            }
+            TargetAttempt lowest = encodeAttempt(document, candidates, minQuality, scale, baseSize, stats);
+            if (lowest.estimatedSize > budget && minQuality > MIN_TARGET_QUALITY
+                    && scale * TARGET_SCALE_STEP < PREFERRED_TARGET_SCALE) {
+                // Gleiche Auflösung mit niedrigerer Qualität versuchen; die höchste Qualität passt hier ohnehin nicht
+                lowest.release();
+                minQuality = MIN_TARGET_QUALITY;
+                lowest = encodeAttempt(document, candidates, minQuality, scale, baseSize, stats);
+            }
+            if (lowest.estimatedSize > budget) {
+                best.release();
+                if (scale * TARGET_SCALE_STEP < MIN_TARGET_SCALE) {
+                    return lowest; // Ziel nicht erreichbar: kleinstes Ergebnis verwenden
+                }
+                lowest.release();
+                scale *= TARGET_SCALE_STEP;
+                continue;
+            }
+            best.release();
+            best = lowest;
+            float low = minQuality;
+            float high = maxQuality;
+            for (int i = 0; i < TARGET_QUALITY_STEPS; i++) {
+                float quality = (low + high) / 2;
+                TargetAttempt attempt = encodeAttempt(document, candidates, quality, scale, baseSize, stats);
+                if (attempt.estimatedSize <= budget) {
+                    best.release();
+                    best = attempt;
+                    low = quality;
+                } else {
+                    attempt.release();
+                    high = quality;
+                }
+            }
+            return best;
+        }
+    }
+
+    // Kodiert alle Kandidaten aus den zwischengespeicherten Pixeln und schätzt die Größe der Datei
+    private TargetAttempt encodeAttempt(PDDocument document, List<ImageJob> candidates, float quality, float scale,
+            long baseSize, CompressionStats stats) throws IOException {
+        TargetAttempt attempt = new TargetAttempt(quality, scale, candidates.size());
+        boolean convertBW = settings.isConvertBW() || settings.isBilevel();
+        List<Integer> indices = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            indices.add(i);
+        }
+        try {
+            runForEach(indices, i -> {
+                ImageJob job = candidates.get(i);
+                if (job.decodeFailed) {
+                    return null; // Nicht bei jedem Versuch erneut dekodieren
+                }
+                // Nicht zwischengespeicherte Pixel werden für diesen Versuch dekodiert und danach freigegeben. Mit
+                // Cache sind alle Pixel vorhanden oder als fehlgeschlagen markiert; hier wird dann nichts reserviert
+                try (DecodedImage decoded = job.pixels == null ? decodeForTarget(document, job, true, stats) : null) {
+                    BufferedImage image = decoded != null ? decoded.image : job.pixels;
+                    if (image == null) {
+                        job.decodeFailed = true;
+                        return null;
+                    }
+                    attempt.encodedImages[i] = encodeAttempt(job, image, quality, scale, convertBW);
+                    return null;
+                }
+            });
+        } catch (IOException e) {
+            attempt.release();
+            throw e;
+        }
+
+        long size = baseSize;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (attempt.encodedImages[i] != null) {
+                size += attempt.encodedImages[i].length() - candidates.get(i).originalLength;
+            }
+        }
+        attempt.estimatedSize = size;
+        stats.incrementTargetAttempts();
+        return attempt;
+    }
+
+    // Verkleinert die Pixel um den Versuchsfaktor und kodiert sie; null, wenn das Original kleiner bleibt
+    private EncodedImage encodeAttempt(ImageJob job, BufferedImage image, float quality, float scale, boolean convertBW) {
+        if (scale < 1.0f) {
+            int width = Math.max(2, Math.round(image.getWidth() * scale));
+            int height = Math.max(2, Math.round(image.getHeight() * scale));
+            long start = System.nanoTime();
+            image = PixelTransform.transform(image, width, height, convertBW, true);
+            job.event.transformTime += System.nanoTime() - start;
+        }
+        EncodedImage encodedImage = encodeTarget(image, quality, job.event);
+        // Original behalten, wenn das neue Bild nicht kleiner ist
+        if (encodedImage != null && encodedImage.length() >= job.originalLength) {
+            encodedImage.release();
+            encodedImage = null;
+        }
+        return encodedImage;
+    }
+
+    private interface ImageTask<T> {
+        Object run(T item) throws Exception;
+    }
+
+    // Führt die Aufgabe für alle Elemente im Bild-Pool aus und wartet auf alle
+    private <T> void runForEach(List<T> items, ImageTask<T> task) throws IOException {
+        cancelled = aborted;
+        List<Future<Object>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(IMAGE_POOL.submit(() -> cancelled ? null : task.run(item)));
+        }
+        try {
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            cancelAndAwait(futures);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Komprimierung abgebrochen");
+        } catch (ExecutionException e) {
+            cancelAndAwait(futures);
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Bricht die übrigen Aufgaben ab und wartet, bis keine mehr läuft, da der Aufrufer danach das Dokument
+    // schließt. Future.cancel hilft hier nicht: Aufgaben im ForkJoinPool werden dabei nicht unterbrochen,
+    // und get() kehrte sofort zurück, während sie weiterlaufen.
+    private void cancelAndAwait(List<? extends Future<?>> futures) {
+        cancelled = true;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Ganzzahliger Faktor, um den beim Dekodieren verkleinert werden kann, ohne unter die Zielgröße zu fallen
+    private int decodeSubsampling(PDImageXObject imageObject, float resolutionScale) {
+        if (!settings.isFastDownsample() || resolutionScale >= 0.5f) {
+            return 1;
+        }
+        List<COSName> filters = imageObject.getStream().getFilters();
+        if (filters.isEmpty()) {
+            return 1;
+        }
+        // Nur JPEG und JPEG 2000 lassen sich beim Dekodieren selbst verkleinern
+        COSName filter = filters.get(filters.size() - 1);
+        if (!COSName.DCT_DECODE.equals(filter) && !COSName.JPX_DECODE.equals(filter)) {
+            return 1;
+        }
+        return (int) Math.floor(1.0 / resolutionScale);
+    }
+
+    // Umgewandeltes Bild und der dafür reservierte Speicher; close() gibt die Reservierung frei
+    private static final class DecodedImage implements AutoCloseable {
+        final BufferedImage image;
+        private final PixelBudget.Reservation reservation;
+        private final CompressionStats stats;
+
+        DecodedImage(BufferedImage image, PixelBudget.Reservation reservation, CompressionStats stats) {
+            this.image = image;
+            this.reservation = reservation;
+            this.stats = stats;
+        }
+
+        @Override
+        public void close() {
+            if (reservation != null) {
+                release(reservation, stats);
+            }
+        }
+    }
+
+    // Liefert das kodierte Bild oder null, wenn das Bild unverändert bleiben soll.
+    // Der Speicher bleibt bis nach dem Kodieren reserviert, da Zielbild und Kodierpuffer dann gleichzeitig leben.
+    private EncodedImage compressImage(PDDocument document, ImageJob job, CompressionStats stats,
+            ImageCompressionEvent event) throws InterruptedException {
+        try (DecodedImage decoded = decodeJob(document, job, true, true, stats, event)) {
+            if (decoded == null || cancelled) {
+                return null;
+            }
+            return encodeTarget(decoded.image, settings.getImageQuality(), event);
+        }
+    }
+
+    // Reserviert Speicher, kopiert das Bild unter der Sperre des Dokuments und dekodiert die Kopie auf Zielgröße
+    // und Farbraum; sehr große Bilder werden ohne Kopie streifenweise gelesen. null, wenn das Bild unverändert
+    // bleiben soll. Ist reuseTarget gesetzt, gilt das Ergebnis nur
+    // bis zur nächsten Umwandlung im selben Thread. Ohne reserve ist der Speicher bereits anderweitig reserviert.
+    private DecodedImage decodeJob(PDDocument document, ImageJob job, boolean reuseTarget, boolean reserve,
+            CompressionStats stats, ImageCompressionEvent event) throws InterruptedException {
+        float resolutionScale = job.resolutionScale;
+        int subsampling;
+        boolean banded;
+        long copiedBytes;
+        long bytes;
+        synchronized (document) {
+            subsampling = decodeSubsampling(job.imageObject, resolutionScale);
+            banded = useBandedReader(job.imageObject, resolutionScale, subsampling);
+            // Streifenweise wird direkt aus dem Dokument gelesen, ohne Kopie der Rohdaten
+            copiedBytes = banded ? 0 : DetachedImages.copiedBytes(job.imageObject);
+            bytes = copiedBytes + (banded ? bandedBytes(job.imageObject, resolutionScale)
+                    : estimateBytes(job.imageObject, resolutionScale, subsampling));
+        }
+        // Speicher für Rohdatenkopie und dekodiertes Bild reservieren, bevor sie entstehen
+        PixelBudget.Reservation reservation = reserve ? reserve(bytes, stats, event) : null;
+        boolean keep = false;
+        try {
+            if (cancelled) {
+                return null;
+            }
+            if (banded) {
+                synchronized (document) {
+                    event.width = job.imageObject.getWidth();
+                    event.height = job.imageObject.getHeight();
+                }
+                BufferedImage image = readBanded(document, job.imageObject, resolutionScale, event);
+                keep = image != null;
+                return keep ? new DecodedImage(image, reservation, stats) : null;
+            }
+            // Nur das Kopieren der Rohdaten greift auf das Dokument zu
+            PDImageXObject imageObject;
+            try {
+                synchronized (document) {
+                    imageObject = DetachedImages.detach(job.imageObject);
+                }
+            } catch (Exception e) {
+                return null;
+            }
+            event.width = imageObject.getWidth();
+            event.height = imageObject.getHeight();
+
+            long start = System.nanoTime();
+            BufferedImage image = null;
+            if (subsampling > 1) {
+                try {
+                    image = imageObject.getImage(null, subsampling);
+                } catch (Exception e) {
+                    // Volle Dekodierung als Rückfallebene
+                    image = null;
+                }
+            }
+            if (image == null) {
+                if (subsampling > 1) {
+                    subsampling = 1;
+                    if (reservation != null) {
+                        release(reservation, stats);
+                        reservation = reserve(copiedBytes + estimateBytes(imageObject, resolutionScale, subsampling),
+                                stats, event);
+                    }
+                }
+                try {
+                    image = imageObject.getImage();
+                } catch (Exception e) {
+                    return null;
+                }
+            }
+            event.decodeTime = System.nanoTime() - start;
+            if (cancelled) {
+                return null;
+            }
+            image = transformImage(image, imageObject, resolutionScale, subsampling, reuseTarget, event);
+            keep = image != null;
+            return keep ? new DecodedImage(image, reservation, stats) : null;
+        } finally {
+            if (!keep && reservation != null) {
+                release(reservation, stats);
+            }
+        }
+    }
+
+    // Sehr große Bilder oder solche, die allein das Budget sprengen, streifenweise lesen
+    private static boolean useBandedReader(PDImageXObject imageObject, float resolutionScale, int subsampling) {
+        long pixels = (long) imageObject.getWidth() * imageObject.getHeight();
+        if (pixels < BandedImageReader.MIN_PIXELS
+                && !PixelBudget.shared().exceedsCapacity(estimateBytes(imageObject, resolutionScale, subsampling))) {
+            return false;
+        }
+        try {
+            return BandedImageReader.isSupported(imageObject);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Zielbild und Zeilenpuffer; die Reservierung übernimmt decodeJob
+    private static long bandedBytes(PDImageXObject imageObject, float resolutionScale) {
+        int newWidth = Math.max(1, (int) (imageObject.getWidth() * resolutionScale));
+        int newHeight = Math.max(1, (int) (imageObject.getHeight() * resolutionScale));
+        return BandedImageReader.estimateBytes(imageObject, newWidth, newHeight);
+    }
+
+    // Liest das Bild aus dem Dokument selbst; dessen Sperre wird nur für einzelne Lesevorgänge gehalten
+    private BufferedImage readBanded(PDDocument document, PDImageXObject imageObject, float resolutionScale,
+            ImageCompressionEvent event) throws InterruptedException {
+        boolean convertBW = settings.isConvertBW() || settings.isBilevel();
+        int newWidth = event.width;
+        int newHeight = event.height;
+        if (resolutionScale != 1.0f) {
+            newWidth = (int) (newWidth * resolutionScale);
+            newHeight = (int) (newHeight * resolutionScale);
+            if (newWidth <= 1 || newHeight <= 1) {
+                return null; // Bild überspringen
+            }
+        }
+
+        event.banded = true;
+        // Lesen und Verkleinern laufen streifenweise zusammen und zählen als Dekodieren
+        long start = System.nanoTime();
+        BufferedImage image;
+        try {
+            image = BandedImageReader.readScaled(imageObject, document, newWidth, newHeight, convertBW);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            e.printStackTrace();
+            return null;
+        }
+        event.decodeTime = System.nanoTime() - start;
+        return image;
+    }
+
+    private static PixelBudget.Reservation reserve(long bytes, CompressionStats stats, ImageCompressionEvent event)
+            throws InterruptedException {
+        PixelBudget.Reservation reservation = PixelBudget.shared().reserve(bytes);
+        event.budgetWaitTime += reservation.getWaitNanos();
+        event.pixelBytes = Math.max(event.pixelBytes, reservation.getBytes());
+        stats.pixelsReserved(reservation.getBytes());
+        return reservation;
+    }
+
+    private static void release(PixelBudget.Reservation reservation, CompressionStats stats) {
+        if (reservation.isReleased()) {
+            return;
+        }
+        reservation.close();
+        stats.pixelsReleased(reservation.getBytes());
+    }
+
+    // Dekodiertes Bild und Zielbild, jeweils mit 4 Byte pro Pixel (TYPE_INT_RGB bzw. ARGB)
+    static long estimateBytes(PDImageXObject imageObject, float resolutionScale, int subsampling) {
+        long width = imageObject.getWidth();
+        long height = imageObject.getHeight();
+        long decodedPixels = ((width + subsampling - 1) / subsampling) * ((height + subsampling - 1) / subsampling);
+        return decodedPixels * 4 + targetBytes(imageObject, resolutionScale);
+    }
+
+    private static long targetBytes(PDImageXObject imageObject, float resolutionScale) {
+        return (long) (imageObject.getWidth() * resolutionScale) * (long) (imageObject.getHeight() * resolutionScale) * 4;
+    }
+
+    private BufferedImage transformImage(BufferedImage image, PDImageXObject imageObject, float resolutionScale,
+            int subsampling, boolean reuseTarget, ImageCompressionEvent event) {
+        boolean convertBW = settings.isConvertBW() || settings.isBilevel();
+
+        // Prüfen der Dimensionen des geladenen BufferedImage
+        int bufferedImageWidth = image.getWidth();
+        int bufferedImageHeight = image.getHeight();
+
+        if (bufferedImageWidth <= 1 || bufferedImageHeight <= 1) {
+            return null; // Bild überspringen
+        }
+
+        // Zielgröße bestimmen, bei reduzierter Dekodierung bezogen auf die Originalgröße
+        int sourceWidth = subsampling > 1 ? imageObject.getWidth() : bufferedImageWidth;
+        int sourceHeight = subsampling > 1 ? imageObject.getHeight() : bufferedImageHeight;
+        int newWidth = Math.min(sourceWidth, bufferedImageWidth);
+        int newHeight = Math.min(sourceHeight, bufferedImageHeight);
+        if (resolutionScale != 1.0f) {
+            newWidth = Math.min(bufferedImageWidth, (int) (sourceWidth * resolutionScale));
+            newHeight = Math.min(bufferedImageHeight, (int) (sourceHeight * resolutionScale));
+
+            // Überprüfen, ob die neuen Dimensionen gültig sind
+            if (newWidth <= 1 || newHeight <= 1) {
+                return null; // Bild überspringen
+            }
+        }
+
+        // Farbumwandlung, Schwarz-Weiß und Skalierung in einem Durchlauf
+        long start = System.nanoTime();
+        image = PixelTransform.transform(image, newWidth, newHeight, convertBW, reuseTarget);
+        event.transformTime = System.nanoTime() - start;
+        return image;
+    }
+
+    // Kodiert das fertig umgewandelte Bild in Zielgröße; im Zielgrößenmodus summieren sich die Versuche
+    private EncodedImage encodeTarget(BufferedImage image, float imageQuality, ImageCompressionEvent event) {
+        long start = System.nanoTime();
+        try {
+            return encodeTarget(image, imageQuality);
+        } finally {
+            event.encodeTime += System.nanoTime() - start;
+        }
+    }
+
+    private EncodedImage encodeTarget(BufferedImage image, float imageQuality) {
+        boolean bilevel = settings.isBilevel();
+        boolean convertBW = settings.isConvertBW() || bilevel;
+
+        // Kodierung wählen: fest im 1-Bit-Modus, sonst optional anhand von Stichproben
+        ImageClassifier.Kind kind = ImageClassifier.Kind.PHOTO;
+        if (bilevel) {
+            kind = ImageClassifier.Kind.BILEVEL;
+        } else if (settings.isAdaptiveCodec()) {
+            kind = ImageClassifier.classify(image);
+        }
+
+        try {
+            if (kind == ImageClassifier.Kind.BILEVEL) {
+                // Schwellwert und CCITT G4 bzw. Flate statt JPEG
+                if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+                    image = PixelTransform.transform(image, image.getWidth(), image.getHeight(), true, false);
+                }
+                return BilevelEncoder.encode(image);
+            }
+            if (kind == ImageClassifier.Kind.GRAPHIC) {
+                EncodedImage lossless = PaletteEncoder.encode(image, convertBW);
+                if (lossless != null) {
+                    return lossless;
+                }
+                // Mehr als 256 Farben: doch als JPEG
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        // Bild komprimieren
+        try {
+            return JpegEncoder.encode(image, imageQuality, convertBW);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
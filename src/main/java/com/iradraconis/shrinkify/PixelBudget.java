@@ -0,0 +1,120 @@
+package com.iradraconis.shrinkify;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Begrenzt den Speicher, den gleichzeitig dekodierte Bilder über alle Dateien hinweg belegen.
+ * Vor dem Dekodieren wird die erwartete Größe reserviert und nach dem Kodieren wieder freigegeben;
+ * reicht das Budget nicht, wartet der Thread, statt den Heap zu überlaufen.
+ */
+public final class PixelBudget {
+
+    // Reserviert wird in KiB, damit auch große Budgets in die Semaphore passen
+    private static final int UNIT = 1024;
+
+    private static final PixelBudget SHARED = new PixelBudget(Runtime.getRuntime().maxMemory() / 2);
+
+    private final long capacityBytes;
+    private final int capacityUnits;
+    private final Semaphore permits;
+    private final AtomicLong reservedBytes = new AtomicLong();
+    private final AtomicLong peakReservedBytes = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    PixelBudget(long capacityBytes) {
+        this.capacityUnits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, capacityBytes / UNIT));
+        this.capacityBytes = (long) capacityUnits * UNIT;
+        // Fair, damit große Bilder nicht von vielen kleinen verdrängt werden
+        this.permits = new Semaphore(capacityUnits, true);
+    }
+
+    /**
+     * Das gemeinsame Budget aller Komprimierungen: die Hälfte des maximalen Heaps.
+     */
+    public static PixelBudget shared() {
+        return SHARED;
+    }
+
+    /**
+     * Reserviert {@code bytes} und wartet, bis genug frei ist. Anfragen, die größer als das ganze
+     * Budget sind, belegen das ganze Budget und laufen damit allein.
+     */
+    Reservation reserve(long bytes) throws InterruptedException {
+        int units = (int) Math.min(capacityUnits, Math.max(1, (bytes + UNIT - 1) / UNIT));
+        long start = System.nanoTime();
+        permits.acquire(units);
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+
+        long reserved = reservedBytes.addAndGet((long) units * UNIT);
+        peakReservedBytes.accumulateAndGet(reserved, Math::max);
+        return new Reservation(units, waited);
+    }
+
+    /**
+     * Liefert true, wenn ein Bild dieser Größe das Budget allein schon ganz belegen würde.
+     */
+    boolean exceedsCapacity(long bytes) {
+        return bytes > capacityBytes;
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    /**
+     * Derzeit reservierter Speicher in Byte.
+     */
+    public long getReservedBytes() {
+        return reservedBytes.get();
+    }
+
+    /**
+     * Höchster gleichzeitig reservierter Speicher seit dem Start.
+     */
+    public long getPeakReservedBytes() {
+        return peakReservedBytes.get();
+    }
+
+    /**
+     * Summe der Wartezeiten aller Threads auf freies Budget.
+     */
+    public long getTotalWaitMillis() {
+        return totalWaitNanos.get() / 1_000_000;
+    }
+
+    final class Reservation implements AutoCloseable {
+
+        private final int units;
+        private final long waitNanos;
+        private boolean released;
+
+        private Reservation(int units, long waitNanos) {
+            this.units = units;
+            this.waitNanos = waitNanos;
+        }
+
+        long getWaitNanos() {
+            return waitNanos;
+        }
+
+        long getBytes() {
+            return (long) units * UNIT;
+        }
+
+        boolean isReleased() {
+            return released;
+        }
+
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            reservedBytes.addAndGet(-(long) units * UNIT);
+            permits.release(units);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * Wandelt ein dekodiertes Bild in einem Durchlauf in RGB bzw. Graustufen um und verkleinert es dabei.
+ * Es entsteht nur das Zielbild; Zwischenbilder in voller Auflösung werden nicht mehr angelegt.
+ * Zeilenpuffer und Zielbild werden pro Thread wiederverwendet. Die Quellzeilen können auch
+ * streifenweise geliefert werden, sodass sehr große Bilder nie ganz im Speicher liegen.
+ */
+final class PixelTransform {
+
+    // Größere Zielbilder werden nicht im Thread gehalten
+    private static final long MAX_REUSABLE_PIXELS = 4_000_000L;
+
+    private static final ThreadLocal<PixelTransform> PER_THREAD = ThreadLocal.withInitial(PixelTransform::new);
+
+    private int[] row = new int[0];
+    private int[] columnMap = new int[0];
+    private int[] sumR = new int[0];
+    private int[] sumG = new int[0];
+    private int[] sumB = new int[0];
+    private int[] count = new int[0];
+    private BufferedImage reusableTarget;
+
+    // Zustand der laufenden Umwandlung
+    private int sourceWidth;
+    private int sourceHeight;
+    private int sourceY;
+    private int targetY;
+    private BufferedImage target;
+    private int[] targetRgb;
+    private byte[] targetGray;
+
+    private PixelTransform() {
+    }
+
+    /**
+     * Liefert das umgewandelte Bild in der Größe {@code targetWidth} x {@code targetHeight}.
+     * Ist {@code reuseTarget} gesetzt, kann das Ergebnis beim nächsten Aufruf im selben Thread
+     * überschrieben werden; es darf dann nur bis dahin verwendet werden.
+     */
+    static BufferedImage transform(BufferedImage source, int targetWidth, int targetHeight, boolean gray, boolean reuseTarget) {
+        int targetType = gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        if (source.getType() == targetType && source.getWidth() == targetWidth && source.getHeight() == targetHeight) {
+            return source;
+        }
+        return PER_THREAD.get().apply(source, targetWidth, targetHeight, targetType, reuseTarget);
+    }
+
+    /**
+     * Beginnt eine Umwandlung, bei der die Quellzeilen der Reihe nach geliefert werden, etwa in Streifen
+     * eines sehr großen Bildes. Angelegt wird nur das Zielbild, nie das ganze Quellbild.
+     * Die Zeilen werden mit {@link #addRows(BufferedImage)} oder {@link #rowBuffer()} und
+     * {@link #addRow()} übergeben; {@link #finish()} liefert das Ergebnis.
+     */
+    static PixelTransform begin(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight, boolean gray) {
+        PixelTransform transform = PER_THREAD.get();
+        int targetType = gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB;
+        transform.start(sourceWidth, sourceHeight, targetWidth, targetHeight, targetType, false);
+        return transform;
+    }
+
+    private BufferedImage apply(BufferedImage source, int targetWidth, int targetHeight, int targetType, boolean reuseTarget) {
+        start(source.getWidth(), source.getHeight(), targetWidth, targetHeight, targetType, reuseTarget);
+        addRows(source);
+        return finish();
+    }
+
+    private void start(int width, int height, int targetWidth, int targetHeight, int targetType, boolean reuseTarget) {
+        sourceWidth = width;
+        sourceHeight = height;
+        ensureCapacity(width, targetWidth);
+
+        target = createTarget(targetWidth, targetHeight, targetType, reuseTarget);
+        targetRgb = null;
+        targetGray = null;
+        if (targetType == BufferedImage.TYPE_INT_RGB) {
+            targetRgb = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+        } else {
+            targetGray = ((DataBufferByte) target.getRaster().getDataBuffer()).getData();
+        }
+
+        // Jeder Quellspalte die Zielspalte zuordnen, in die sie gemittelt wird
+        for (int x = 0; x < width; x++) {
+            columnMap[x] = (int) ((long) x * targetWidth / width);
+        }
+        sourceY = 0;
+        targetY = 0;
+        clearSums();
+    }
+
+    /**
+     * Übernimmt alle Zeilen von {@code band} als nächste Quellzeilen.
+     */
+    void addRows(BufferedImage band) {
+        for (int y = 0; y < band.getHeight(); y++) {
+            readRow(band, y, sourceWidth, row);
+            addRow();
+        }
+    }
+
+    /**
+     * Puffer für die nächste Quellzeile als ARGB; danach {@link #addRow()} aufrufen.
+     */
+    int[] rowBuffer() {
+        return row;
+    }
+
+    // Summiert die Zeile im Zeilenpuffer auf und schreibt die Zielzeile, sobald alle ihre Quellzeilen da sind
+    void addRow() {
+        if (sourceY >= sourceHeight) {
+            return;
+        }
+        for (int x = 0; x < sourceWidth; x++) {
+            int argb = row[x];
+            int alpha = argb >>> 24;
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+            if (alpha != 0xFF) {
+                // Wie drawImage auf ein RGB-Bild: Transparenz wird auf Schwarz gelegt
+                r = r * alpha / 255;
+                g = g * alpha / 255;
+                b = b * alpha / 255;
+            }
+            int column = columnMap[x];
+            sumR[column] += r;
+            sumG[column] += g;
+            sumB[column] += b;
+            count[column]++;
+        }
+        sourceY++;
+        if (sourceY >= rowEnd()) {
+            writeTargetRow();
+        }
+    }
+
+    BufferedImage finish() {
+        // Fehlende Zeilen, falls weniger Quellzeilen als erwartet kamen
+        while (targetY < target.getHeight()) {
+            writeTargetRow();
+        }
+        BufferedImage result = target;
+        target = null;
+        targetRgb = null;
+        targetGray = null;
+        return result;
+    }
+
+    // Erste Quellzeile, die nicht mehr in die aktuelle Zielzeile fällt
+    private int rowEnd() {
+        int targetHeight = target.getHeight();
+        return (int) ((long) (targetY + 1) * sourceHeight / targetHeight);
+    }
+
+    private void writeTargetRow() {
+        int targetWidth = target.getWidth();
+        int offset = targetY * targetWidth;
+        for (int x = 0; x < targetWidth; x++) {
+            int n = Math.max(1, count[x]);
+            int r = sumR[x] / n;
+            int g = sumG[x] / n;
+            int b = sumB[x] / n;
+            if (targetRgb != null) {
+                targetRgb[offset + x] = (r << 16) | (g << 8) | b;
+            } else {
+                targetGray[offset + x] = (byte) ((r * 299 + g * 587 + b * 114) / 1000);
+            }
+        }
+        targetY++;
+        clearSums();
+    }
+
+    private void clearSums() {
+        int targetWidth = target.getWidth();
+        Arrays.fill(sumR, 0, targetWidth, 0);
+        Arrays.fill(sumG, 0, targetWidth, 0);
+        Arrays.fill(sumB, 0, targetWidth, 0);
+        Arrays.fill(count, 0, targetWidth, 0);
+    }
+
+    // Liest eine Zeile als ARGB; für die häufigen Bildtypen direkt aus dem Datenpuffer. Graustufen werden
+    // unverändert übernommen, getRGB würde sie als linearen Grauraum nach sRGB umrechnen und aufhellen.
+    static void readRow(BufferedImage source, int y, int width, int[] row) {
+        Raster raster = source.getRaster();
+        int type = source.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && raster.getParent() == null) {
+            SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            System.arraycopy(data, raster.getDataBuffer().getOffset() + y * sampleModel.getScanlineStride(), row, 0, width);
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                for (int x = 0; x < width; x++) {
+                    row[x] |= 0xFF000000;
+                }
+            }
+        } else if (type == BufferedImage.TYPE_BYTE_GRAY
+                && raster.getSampleModel() instanceof ComponentSampleModel
+                && raster.getParent() == null) {
+            ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int offset = raster.getDataBuffer().getOffset() + y * sampleModel.getScanlineStride();
+            for (int x = 0; x < width; x++) {
+                int v = data[offset + x] & 0xFF;
+                row[x] = 0xFF000000 | (v << 16) | (v << 8) | v;
+            }
+        } else if (type == BufferedImage.TYPE_BYTE_GRAY) {
+            raster.getSamples(0, y, width, 1, 0, row);
+            for (int x = 0; x < width; x++) {
+                int v = row[x];
+                row[x] = 0xFF000000 | (v << 16) | (v << 8) | v;
+            }
+        } else {
+            source.getRGB(0, y, width, 1, row, 0, width);
+        }
+    }
+
+    private BufferedImage createTarget(int width, int height, int type, boolean reuseTarget) {
+        if (!reuseTarget || (long) width * height > MAX_REUSABLE_PIXELS) {
+            return new BufferedImage(width, height, type);
+        }
+        if (reusableTarget == null || reusableTarget.getType() != type
+                || reusableTarget.getWidth() != width || reusableTarget.getHeight() != height) {
+            reusableTarget = new BufferedImage(width, height, type);
+        }
+        return reusableTarget;
+    }
+
+    private void ensureCapacity(int sourceWidth, int targetWidth) {
+        if (row.length < sourceWidth) {
+            row = new int[sourceWidth];
+            columnMap = new int[sourceWidth];
+        }
+        if (sumR.length < targetWidth) {
+            sumR = new int[targetWidth];
+            sumG = new int[targetWidth];
+            sumB = new int[targetWidth];
+            count = new int[targetWidth];
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.iradraconis.shrinkify;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.swing.BorderFactory;
+import javax.swing.BoxLayout;
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+/**
+ * Vorher/Nachher-Vorschau einer Datei. Gerendert und komprimiert werden nur die sichtbaren Seiten,
+ * in einem eigenen Hintergrund-Thread und in Bildschirmauflösung. Die letzten Vorschaubilder bleiben
+ * in einem kleinen LRU-Cache; Seiten, die aus dem sichtbaren Bereich gescrollt werden, fallen aus der
+ * Warteschlange. Alle Felder außer dem Renderer werden nur auf dem EDT verwendet.
+ */
+class PreviewPanel extends JPanel {
+
+    private static final int THUMBNAIL_WIDTH = 320;
+    private static final int CACHE_SIZE = 32;
+
+    // Ein Thread, da PDDocument nicht threadsicher ist
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "shrinkify-preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final JPanel pagesPanel = new JPanel();
+    private final JScrollPane scrollPane = new JScrollPane(pagesPanel);
+    private final List<PageRow> rows = new ArrayList<>();
+    private final Map<String, BufferedImage> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private final Map<String, Future<?>> inFlight = new HashMap<>();
+    private CompressionSettings settings;
+    private PagePreviewRenderer renderer;
+
+    private static final class PageRow {
+        final int pageIndex;
+        final JPanel panel;
+        final JLabel before;
+        final JLabel after;
+
+        PageRow(int pageIndex, JPanel panel, JLabel before, JLabel after) {
+            this.pageIndex = pageIndex;
+            this.panel = panel;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    PreviewPanel(File file, CompressionSettings settings) {
+        super(new BorderLayout());
+        this.settings = settings;
+        setBackground(new Color(50, 50, 50));
+        pagesPanel.setLayout(new BoxLayout(pagesPanel, BoxLayout.Y_AXIS));
+        pagesPanel.setBackground(new Color(50, 50, 50));
+        scrollPane.getVerticalScrollBar().setUnitIncrement(24);
+        scrollPane.getViewport().addChangeListener(e -> updateVisiblePages());
+        add(scrollPane, BorderLayout.CENTER);
+
+        JLabel status = new JLabel("Datei wird geladen …", SwingConstants.CENTER);
+        status.setForeground(Color.WHITE);
+        pagesPanel.add(status);
+
+        // Laden im Hintergrund, danach die Zeilen mit Platzhaltern in Seitengröße anlegen
+        executor.submit(() -> {
+            try {
+                PagePreviewRenderer opened = new PagePreviewRenderer(file);
+                List<PDRectangle> sizes = new ArrayList<>();
+                for (int i = 0; i < opened.getPageCount(); i++) {
+                    sizes.add(opened.getPageSize(i));
+                }
+                renderer = opened;
+                SwingUtilities.invokeLater(() -> createRows(sizes));
+            } catch (IOException e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> status.setText("Datei konnte nicht geladen werden: " + e.getMessage()));
+            }
+        });
+    }
+
+    private void createRows(List<PDRectangle> sizes) {
+        pagesPanel.removeAll();
+        for (int i = 0; i < sizes.size(); i++) {
+            PDRectangle size = sizes.get(i);
+            int height = Math.max(1, Math.round(THUMBNAIL_WIDTH * size.getHeight() / size.getWidth()));
+            JLabel before = placeholder(height);
+            JLabel after = placeholder(height);
+            JPanel row = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 5));
+            row.setBackground(new Color(50, 50, 50));
+            row.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.GRAY),
+                    "Seite " + (i + 1) + ": vorher / nachher", 0, 0, null, Color.WHITE));
+            row.add(before);
+            row.add(after);
+            pagesPanel.add(row);
+            rows.add(new PageRow(i, row, before, after));
+        }
+        pagesPanel.revalidate();
+        SwingUtilities.invokeLater(this::updateVisiblePages);
+    }
+
+    private static JLabel placeholder(int height) {
+        JLabel label = new JLabel("…", SwingConstants.CENTER);
+        label.setForeground(Color.LIGHT_GRAY);
+        label.setPreferredSize(new Dimension(THUMBNAIL_WIDTH, height));
+        label.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        return label;
+    }
+
+    /**
+     * Neue Einstellungen: laufende Nachher-Bilder verwerfen und die sichtbaren Seiten neu komprimieren.
+     * Bilder früherer Einstellungen bleiben im Cache, falls sie wieder gewählt werden.
+     */
+    void setSettings(CompressionSettings settings) {
+        if (settings.fingerprint().equals(this.settings.fingerprint())) {
+            return;
+        }
+        this.settings = settings;
+        for (Iterator<Map.Entry<String, Future<?>>> it = inFlight.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Future<?>> entry = it.next();
+            if (entry.getKey().startsWith("nachher")) {
+                entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+        for (PageRow row : rows) {
+            row.after.setIcon(null);
+            row.after.setText("…");
+        }
+        updateVisiblePages();
+    }
+
+    // Fordert die sichtbaren Seiten an und streicht Aufträge für Seiten, die nicht mehr sichtbar sind
+    private void updateVisiblePages() {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Rectangle visible = scrollPane.getViewport().getViewRect();
+        Set<String> wanted = new HashSet<>();
+        for (PageRow row : rows) {
+            if (!row.panel.getBounds().intersects(visible)) {
+                continue;
+            }
+            wanted.add(request(row, "vorher|" + row.pageIndex, row.before, null));
+            wanted.add(request(row, "nachher|" + row.pageIndex + "|" + settings.fingerprint(), row.after, settings));
+        }
+        // Nur wartende Aufträge abbrechen: ein Interrupt würde den Dateikanal von PDFBox schließen
+        for (Iterator<Map.Entry<String, Future<?>>> it = inFlight.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Future<?>> entry = it.next();
+            if (!wanted.contains(entry.getKey())) {
+                entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+    }
+
+    private String request(PageRow row, String key, JLabel label, CompressionSettings compressed) {
+        BufferedImage cached = cache.get(key);
+        if (cached != null) {
+            label.setText(null);
+            label.setIcon(new ImageIcon(cached));
+            return key;
+        }
+        if (inFlight.containsKey(key)) {
+            return key;
+        }
+        inFlight.put(key, executor.submit(() -> {
+            BufferedImage image;
+            try {
+                image = compressed == null
+                        ? renderer.renderOriginal(row.pageIndex, THUMBNAIL_WIDTH)
+                        : renderer.renderCompressed(row.pageIndex, THUMBNAIL_WIDTH, compressed);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    inFlight.remove(key);
+                    label.setText("Fehler");
+                });
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                inFlight.remove(key);
+                cache.put(key, image);
+                // Nur anzeigen, wenn die Einstellungen inzwischen nicht geändert wurden
+                if (compressed == null || compressed.fingerprint().equals(settings.fingerprint())) {
+                    label.setText(null);
+                    label.setIcon(new ImageIcon(image));
+                }
+            });
+        }));
+        return key;
+    }
+
+    /**
+     * Bricht alle Aufträge ab und schließt die Dokumente.
+     */
+    void dispose() {
+        inFlight.values().forEach(future -> future.cancel(false));
+        inFlight.clear();
+        executor.submit(() -> {
+            if (renderer != null) {
+                try {
+                    renderer.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        executor.shutdown();
+    }
+}
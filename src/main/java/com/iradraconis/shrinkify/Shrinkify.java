@@ -5,27 +5,13 @@ import com.formdev.flatlaf.intellijthemes.FlatMonokaiProIJTheme;
 import java.awt.*;
 import java.awt.datatransfer.*;
 import java.awt.event.*;
-import java.awt.image.BufferedImage;
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.imageio.*;
-import javax.imageio.stream.ImageOutputStream;
 import javax.swing.*;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.cos.COSName;
-import org.apache.pdfbox.io.IOUtils;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDResources;
-import org.apache.pdfbox.pdmodel.graphics.PDXObject;
-import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
-import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 
 public class Shrinkify extends JFrame {
 
@@ -33,8 +19,23 @@ public class Shrinkify extends JFrame {
     private JComboBox<String> qualityComboBox;
     private JComboBox<String> resolutionComboBox;
     private JCheckBox bwCheckBox;
+    private JCheckBox fastDownsampleCheckBox;
+    private JCheckBox bilevelCheckBox;
+    private JCheckBox adaptiveCodecCheckBox;
     private JCheckBox overwriteCheckBox;
+    private JCheckBox skipCompressedCheckBox;
+    private JSpinner workerSpinner;
+    private JSpinner targetSizeSpinner;
     private JButton saveButton;
+    private JButton previewButton;
+    // Laufende Schätzung; nur auf dem EDT gelesen und gesetzt
+    private Thread estimateThread;
+    // Abbruch der Schätzung ohne Interrupt, der den Dateikanal von PDFBox schließen würde
+    private volatile boolean estimateCancelled;
+    private PdfCompressor estimateCompressor;
+    // Offene Seitenvorschau, nur auf dem EDT verwendet
+    private JDialog previewDialog;
+    private PreviewPanel previewPanel;
     private JProgressBar progressBar;
     private DefaultListModel<File> fileListModel;
     private JList<File> fileList;
@@ -101,6 +102,12 @@ public class Shrinkify extends JFrame {
                         fileList.setSelectedIndex(index);
                         showContextMenu(e.getX(), e.getY());
                     }
+                } else if (e.getClickCount() == 2) {
+                    // Doppelklick öffnet die Seitenvorschau
+                    File selectedFile = fileList.getSelectedValue();
+                    if (selectedFile != null) {
+                        openPreview(selectedFile);
+                    }
                 }
             }
         });
@@ -134,7 +141,7 @@ public class Shrinkify extends JFrame {
         settingsPanel.add(qualityComboBox);
 
         // Auflösungs-Kombobox
-        String[] resolutions = {"100%", "90%", "80%", "70%", "60%", "50%", "40%", "30%"};
+        String[] resolutions = {"100%", "90%", "80%", "70%", "60%", "50%", "40%", "30%", "Ziel 300 dpi", "Ziel 200 dpi", "Ziel 150 dpi", "Ziel 96 dpi"};
         resolutionComboBox = new JComboBox<>(resolutions);
         resolutionComboBox.setMaximumSize(new Dimension(Integer.MAX_VALUE, resolutionComboBox.getPreferredSize().height));
         resolutionComboBox.setAlignmentX(Component.LEFT_ALIGNMENT);
@@ -146,6 +153,18 @@ public class Shrinkify extends JFrame {
         settingsPanel.add(resolutionLabel);
         settingsPanel.add(resolutionComboBox);
 
+        // Zielgröße je Datei; Qualität und Auflösung oben gelten dann als Obergrenze
+        targetSizeSpinner = new JSpinner(new SpinnerNumberModel(0.0, 0.0, 10000.0, 0.5));
+        targetSizeSpinner.setToolTipText("Qualität und Auflösung pro Datei automatisch senken, bis die Datei kleiner ist");
+        targetSizeSpinner.setMaximumSize(new Dimension(Integer.MAX_VALUE, targetSizeSpinner.getPreferredSize().height));
+        targetSizeSpinner.setAlignmentX(Component.LEFT_ALIGNMENT);
+        JLabel targetSizeLabel = new JLabel("Zielgröße in MB (0 = aus):");
+        targetSizeLabel.setForeground(Color.WHITE);
+        targetSizeLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        settingsPanel.add(Box.createVerticalStrut(10));
+        settingsPanel.add(targetSizeLabel);
+        settingsPanel.add(targetSizeSpinner);
+
         // Schwarz/Weiß Checkbox
         bwCheckBox = new JCheckBox("In Schwarz/Weiß konvertieren");
         bwCheckBox.setForeground(Color.WHITE);        
@@ -154,6 +173,30 @@ public class Shrinkify extends JFrame {
         settingsPanel.add(Box.createVerticalStrut(10));
         settingsPanel.add(bwCheckBox);
 
+        // 1-Bit-Dokument Checkbox
+        bilevelCheckBox = new JCheckBox("1-Bit-Dokument (Fax G4)");
+        bilevelCheckBox.setToolTipText("Bilder in reines Schwarz/Weiß umwandeln und verlustfrei als CCITT G4 speichern");
+        bilevelCheckBox.setForeground(Color.WHITE);
+        bilevelCheckBox.setBackground(new Color(50, 50, 50));
+        bilevelCheckBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        settingsPanel.add(bilevelCheckBox);
+
+        // Kodierung pro Bild automatisch wählen
+        adaptiveCodecCheckBox = new JCheckBox("Kodierung automatisch wählen");
+        adaptiveCodecCheckBox.setToolTipText("Grafiken verlustfrei, Fotos als JPEG, Schwarz/Weiß als CCITT speichern");
+        adaptiveCodecCheckBox.setForeground(Color.WHITE);
+        adaptiveCodecCheckBox.setBackground(new Color(50, 50, 50));
+        adaptiveCodecCheckBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        settingsPanel.add(adaptiveCodecCheckBox);
+
+        // Schnelles Verkleinern beim Dekodieren
+        fastDownsampleCheckBox = new JCheckBox("Schnell verkleinern (JPEG)");
+        fastDownsampleCheckBox.setToolTipText("JPEG-Bilder direkt in reduzierter Auflösung dekodieren");
+        fastDownsampleCheckBox.setForeground(Color.WHITE);
+        fastDownsampleCheckBox.setBackground(new Color(50, 50, 50));
+        fastDownsampleCheckBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        settingsPanel.add(fastDownsampleCheckBox);
+
         // Überschreiben Checkbox
         overwriteCheckBox = new JCheckBox("Urspr. Dateien überschreiben");
         overwriteCheckBox.setSelected(true);
@@ -175,6 +218,35 @@ public class Shrinkify extends JFrame {
         settingsPanel.add(Box.createVerticalStrut(15));
         settingsPanel.add(overwriteCheckBox);
 
+        // Überspringen bereits komprimierter Dateien; legt dafür ein Manifest im Zielordner an
+        skipCompressedCheckBox = new JCheckBox("Bereits komprimierte überspringen");
+        skipCompressedCheckBox.setToolTipText("Merkt sich fertige Dateien in einer Datei "
+                + BatchManifest.FILE_NAME + " im Zielordner bzw. im Ordner der Originaldatei");
+        skipCompressedCheckBox.setForeground(Color.WHITE);
+        skipCompressedCheckBox.setBackground(new Color(50, 50, 50));
+        skipCompressedCheckBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        settingsPanel.add(skipCompressedCheckBox);
+
+        // Eine offene Vorschau folgt den Einstellungen
+        ActionListener previewUpdater = e -> updatePreviewSettings();
+        qualityComboBox.addActionListener(previewUpdater);
+        resolutionComboBox.addActionListener(previewUpdater);
+        bwCheckBox.addActionListener(previewUpdater);
+        bilevelCheckBox.addActionListener(previewUpdater);
+        adaptiveCodecCheckBox.addActionListener(previewUpdater);
+        fastDownsampleCheckBox.addActionListener(previewUpdater);
+
+        // Anzahl paralleler Dateien
+        workerSpinner = new JSpinner(new SpinnerNumberModel(BatchCompressor.defaultWorkers(), 1, 64, 1));
+        workerSpinner.setMaximumSize(new Dimension(Integer.MAX_VALUE, workerSpinner.getPreferredSize().height));
+        workerSpinner.setAlignmentX(Component.LEFT_ALIGNMENT);
+        JLabel workerLabel = new JLabel("Parallele Dateien:");
+        workerLabel.setForeground(Color.WHITE);
+        workerLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        settingsPanel.add(Box.createVerticalStrut(10));
+        settingsPanel.add(workerLabel);
+        settingsPanel.add(workerSpinner);
+
         
 
         // Einstellungen-Panel hinzufügen (mittig)
@@ -189,12 +261,13 @@ public class Shrinkify extends JFrame {
         buttonPanel.setLayout(new BoxLayout(buttonPanel, BoxLayout.Y_AXIS));
         buttonPanel.setBackground(new Color(50, 50, 50)); // Dunkler Hintergrund
 
-        // Test-Button für Vorschau der Komprimierung
-        JButton testButton = new JButton("Vorschau");
-        testButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, testButton.getPreferredSize().height));
+        // Vorschau: schätzt Größe und Dauer anhand von Stichproben, ein zweiter Klick bricht ab
+        previewButton = new JButton("Vorschau");
+        previewButton.setToolTipText("Ergebnis anhand einiger Bilder je Datei schätzen");
+        previewButton.setMaximumSize(new Dimension(Integer.MAX_VALUE, previewButton.getPreferredSize().height));
 
-        testButton.addActionListener(e -> previewCompressedFile());
-        settingsPanel.add(testButton);
+        previewButton.addActionListener(e -> estimateCompression());
+        settingsPanel.add(previewButton);
 
         // Speichern-Button
         saveButton = new JButton("Speichern");
@@ -282,6 +355,14 @@ public class Shrinkify extends JFrame {
             }
         });
         contextMenu.add(removeItem);
+        JMenuItem previewItem = new JMenuItem("Vorschau der Seiten öffnen");
+        previewItem.addActionListener(e -> {
+            File selectedFile = fileList.getSelectedValue();
+            if (selectedFile != null) {
+                openPreview(selectedFile);
+            }
+        });
+        contextMenu.add(previewItem);
         contextMenu.show(fileList, x, y);
     }
 
@@ -297,56 +378,128 @@ public class Shrinkify extends JFrame {
         }
     }
     
-        private void previewCompressedFile() {
+    // Vorher/Nachher-Vorschau der Seiten im eigenen Fenster; komprimiert nur die sichtbaren Seiten
+    private void openPreview(File inputFile) {
+        if (previewDialog != null) {
+            previewDialog.dispose();
+        }
+        PreviewPanel panel = new PreviewPanel(inputFile, getCompressionSettings());
+        JDialog dialog = new JDialog(this, "Vorschau: " + inputFile.getName(), false);
+        dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        dialog.add(panel);
+        dialog.setSize(760, 800);
+        dialog.setLocationRelativeTo(this);
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                panel.dispose();
+                if (previewDialog == dialog) {
+                    previewDialog = null;
+                    previewPanel = null;
+                }
+            }
+        });
+        previewDialog = dialog;
+        previewPanel = panel;
+        dialog.setVisible(true);
+    }
+
+    // Geänderte Einstellungen an eine offene Vorschau weitergeben
+    private void updatePreviewSettings() {
+        if (previewPanel != null) {
+            previewPanel.setSettings(getCompressionSettings());
+        }
+    }
+
+    // Schätzt Größe und Dauer aller Dateien anhand von Stichproben; Ergebnisse erscheinen, sobald eine Datei fertig ist
+    private void estimateCompression() {
+        if (estimateThread != null) {
+            // Zweiter Klick bricht die laufende Schätzung ab
+            estimateCancelled = true;
+            estimateCompressor.cancel();
+            return;
+        }
         if (fileListModel.isEmpty()) {
             JOptionPane.showMessageDialog(this, "Bitte wählen Sie mindestens eine PDF-Datei aus.");
             return;
         }
-    
-        float imageQuality = getImageQuality();
-        boolean convertBW = bwCheckBox.isSelected();
-        float resolutionScale = getResolutionScale();
-    
-        new Thread(() -> {
-            StringBuilder compressionInfo = new StringBuilder();
-            for (int i = 0; i < fileListModel.size(); i++) {
-                File inputFile = fileListModel.getElementAt(i);
-    
+
+        // Dateiliste auf dem EDT kopieren
+        List<File> inputFiles = new ArrayList<>(fileListModel.size());
+        for (int i = 0; i < fileListModel.size(); i++) {
+            inputFiles.add(fileListModel.getElementAt(i));
+        }
+        PdfCompressor compressor = new PdfCompressor(getCompressionSettings());
+        estimateCompressor = compressor;
+        estimateCancelled = false;
+        int workers = (Integer) workerSpinner.getValue();
+        DecimalFormat df = new DecimalFormat("#.##");
+
+        compressionInfoTextArea.setText("Schätzung anhand von Stichproben:\n\n");
+        progressBar.setMaximum(inputFiles.size());
+        progressBar.setValue(0);
+        previewButton.setText("Abbrechen");
+
+        estimateThread = new Thread(() -> {
+            long originalTotal = 0;
+            long estimatedTotal = 0;
+            long millisTotal = 0;
+            int finished = 0;
+            for (File inputFile : inputFiles) {
+                if (estimateCancelled) {
+                    break;
+                }
+                String info;
                 try {
-                    // Temporäre Datei erstellen
-                    File tempFile = File.createTempFile("preview_compressed_", ".pdf");
-                    tempFile.deleteOnExit();  // Wird nach dem Schließen des Programms gelöscht
-    
-                    long originalSize = inputFile.length();  // Ursprüngliche Dateigröße
-    
-                    // PDF komprimieren
-                    compressPDFWithPDFBox(inputFile, tempFile, imageQuality, convertBW, resolutionScale);
-    
-                    long compressedSize = tempFile.length();  // Komprimierte Dateigröße
-    
-                    // Kompressionsinformationen berechnen
-                    double originalSizeMB = originalSize / (1024.0 * 1024.0);
-                    double compressedSizeMB = compressedSize / (1024.0 * 1024.0);
-                    double reductionPercent = ((originalSize - compressedSize) / (double) originalSize) * 100;
-    
-                    // Informationen hinzufügen
-                    compressionInfo.append(String.format("Datei: %s\nOriginalgröße: %.2f MB - Komprimiert: %.2f MB - Reduktion: %.2f%%\n\n",
-                            inputFile.getName(), originalSizeMB, compressedSizeMB, reductionPercent));
-    
-                    // Vorschau anzeigen - Öffnet das temporäre PDF mit dem Standard-PDF-Viewer des Systems
-                    if (Desktop.isDesktopSupported()) {
-                        Desktop.getDesktop().open(tempFile);
-                    } else {
-                        JOptionPane.showMessageDialog(this, "Vorschau nicht unterstützt auf diesem System.");
+                    SizeEstimate estimate = compressor.estimate(inputFile);
+                    if (estimateCancelled) {
+                        break; // Ergebnis nach dem Abbruch unvollständig
+                    }
+                    originalTotal += estimate.getOriginalSize();
+                    estimatedTotal += estimate.getEstimatedSize();
+                    millisTotal += estimate.getEstimatedMillis();
+                    info = String.format("Datei: %s\nOriginalgröße: %s MB - Geschätzt: ca. %s MB - Reduktion: ca. %s%%\n"
+                            + "Dauer: ca. %s s - %d von %d Bildern geprüft\n\n",
+                            inputFile.getName(),
+                            df.format(estimate.getOriginalSize() / (1024.0 * 1024.0)),
+                            df.format(estimate.getEstimatedSize() / (1024.0 * 1024.0)),
+                            df.format(estimate.getReductionPercent()),
+                            df.format(estimate.getEstimatedMillis() / 1000.0),
+                            estimate.getImagesSampled(), estimate.getImagesFound());
+                } catch (IOException | RuntimeException ex) {
+                    if (estimateCancelled) {
+                        break;
                     }
-    
-                } catch (IOException ex) {
                     ex.printStackTrace();
-                    JOptionPane.showMessageDialog(this, "Fehler beim Erstellen der Vorschau für Datei: " + inputFile.getName());
+                    info = String.format("Datei: %s\nFehler: %s\n\n", inputFile.getName(), ex.getMessage());
                 }
+                int completed = ++finished;
+                String fileInfo = info;
+                SwingUtilities.invokeLater(() -> {
+                    compressionInfoTextArea.append(fileInfo);
+                    progressBar.setValue(completed);
+                });
             }
-            compressionInfoTextArea.setText(compressionInfo.toString());
-        }).start();
+
+            String summary;
+            if (finished < inputFiles.size()) {
+                summary = String.format("Schätzung abgebrochen nach %d von %d Dateien.", finished, inputFiles.size());
+            } else {
+                // Dateien laufen beim Speichern parallel
+                summary = String.format("Gesamt: %s MB - Geschätzt: ca. %s MB - Dauer: ca. %s s bei %d parallelen Dateien",
+                        df.format(originalTotal / (1024.0 * 1024.0)),
+                        df.format(estimatedTotal / (1024.0 * 1024.0)),
+                        df.format(millisTotal / 1000.0 / Math.min(workers, inputFiles.size())), workers);
+            }
+            SwingUtilities.invokeLater(() -> {
+                compressionInfoTextArea.append(summary);
+                previewButton.setText("Vorschau");
+                estimateThread = null;
+                estimateCompressor = null;
+            });
+        }, "shrinkify-estimate");
+        estimateThread.setDaemon(true);
+        estimateThread.start();
     }
 
 
@@ -357,10 +510,10 @@ public class Shrinkify extends JFrame {
             return;
         }
 
-        float imageQuality = getImageQuality();
-        boolean convertBW = bwCheckBox.isSelected();
-        float resolutionScale = getResolutionScale();
+        CompressionSettings settings = getCompressionSettings();
         boolean overwriteFiles = overwriteCheckBox.isSelected();
+        boolean useManifest = skipCompressedCheckBox.isSelected();
+        int workers = (Integer) workerSpinner.getValue();
 
         File outputDir = null;
         if (!overwriteFiles) {
@@ -373,66 +526,33 @@ public class Shrinkify extends JFrame {
             outputDir = dirChooser.getSelectedFile();
         }
 
-        // Listen zur Speicherung der Dateigrößen
-        ArrayList<String> results = new ArrayList<>();
-        DecimalFormat df = new DecimalFormat("#.##");
+        // Dateiliste auf dem EDT kopieren, die Worker greifen nicht auf das Listenmodell zu
+        List<File> inputFiles = new ArrayList<>(fileListModel.size());
+        for (int i = 0; i < fileListModel.size(); i++) {
+            inputFiles.add(fileListModel.getElementAt(i));
+        }
 
+        DecimalFormat df = new DecimalFormat("#.##");
         File finalOutputDir = outputDir;
 
+        progressBar.setMaximum(inputFiles.size());
+        progressBar.setValue(0);
+        saveButton.setEnabled(false);
+
         // Startzeit erfassen
         long startTime = System.currentTimeMillis();
 
         new Thread(() -> {
-            progressBar.setMaximum(fileListModel.size());
-            int progress = 0;
-
-            for (int i = 0; i < fileListModel.size(); i++) {
-                File inputFile = fileListModel.getElementAt(i);
-                File outputFile;
-
-                if (overwriteFiles) {
-                    // Temporäre Datei erstellen
-                    try {
-                        outputFile = File.createTempFile("temp_compressed_", ".pdf");
-                        outputFile.deleteOnExit();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        JOptionPane.showMessageDialog(this, "Fehler beim Erstellen der temporären Datei für: " + inputFile.getName());
-                        continue;
-                    }
-                } else {
-                    outputFile = new File(finalOutputDir, "komprimiert_" + inputFile.getName());
-                }
-
-                try {
-                    long originalSize = inputFile.length();
-                    compressPDFWithPDFBox(inputFile, outputFile, imageQuality, convertBW, resolutionScale);
-
-                    if (overwriteFiles) {
-                        // Originaldatei durch komprimierte Datei ersetzen
-                        Files.move(outputFile.toPath(), inputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                    }
-
-                    long compressedSize = overwriteFiles ? inputFile.length() : outputFile.length();
-
-                    double originalSizeMB = originalSize / (1024.0 * 1024.0);
-                    double compressedSizeMB = compressedSize / (1024.0 * 1024.0);
-                    double reductionPercent = ((originalSize - compressedSize) / (double) originalSize) * 100;
-
-                    String result = String.format("Datei: %s\nOriginalgröße: %s MB\nKomprimiert: %s MB\nReduktion: %s%%\n",
-                            inputFile.getName(),
-                            df.format(originalSizeMB),
-                            df.format(compressedSizeMB),
-                            df.format(reductionPercent));
-                    results.add(result);
-
-                } catch (IOException ex) {
-                    ex.printStackTrace();
-                    JOptionPane.showMessageDialog(this, "Fehler beim Verarbeiten der Datei: " + inputFile.getName());
-                }
-
-                progress++;
-                progressBar.setValue(progress);
+            BatchCompressor batch = new BatchCompressor(settings, workers);
+            batch.setUseManifest(useManifest);
+            List<FileResult> results;
+            try {
+                results = batch.run(inputFiles, finalOutputDir,
+                        (index, result, completed, total) -> SwingUtilities.invokeLater(() -> progressBar.setValue(completed)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                SwingUtilities.invokeLater(() -> saveButton.setEnabled(true));
+                return;
             }
 
             // Endzeit erfassen und Dauer berechnen
@@ -441,19 +561,70 @@ public class Shrinkify extends JFrame {
             long seconds = (duration / 1000) % 60;
             long minutes = (duration / (1000 * 60)) % 60;
 
-            // Zusammenstellen der Ergebnisse
-            StringBuilder message = new StringBuilder("Alle Dateien wurden erfolgreich verarbeitet.\n\n");
-            for (String result : results) {
-                message.append(result).append("\n");
+            // Zusammenstellen der Ergebnisse in Reihenfolge der Dateiliste
+            StringBuilder message = new StringBuilder();
+            StringBuilder errors = new StringBuilder();
+            for (FileResult result : results) {
+                if (result.isSkipped()) {
+                    message.append(String.format("Datei: %s\nBereits komprimiert, übersprungen\n",
+                            result.getInputFile().getName()));
+                } else if (result.isSuccess()) {
+                    message.append(String.format("Datei: %s\nOriginalgröße: %s MB\nKomprimiert: %s MB\nReduktion: %s%%\n",
+                            result.getInputFile().getName(),
+                            df.format(result.getOriginalSize() / (1024.0 * 1024.0)),
+                            df.format(result.getCompressedSize() / (1024.0 * 1024.0)),
+                            df.format(result.getReductionPercent())));
+                } else {
+                    message.append(String.format("Datei: %s\nFehler: %s\n",
+                            result.getInputFile().getName(), result.getError().getMessage()));
+                    errors.append(result.getInputFile().getName()).append("\n");
+                }
+                message.append("\n");
             }
+            message.insert(0, errors.length() == 0
+                    ? "Alle Dateien wurden erfolgreich verarbeitet.\n\n"
+                    : "Einige Dateien konnten nicht verarbeitet werden.\n\n");
 
             // Zeit zur Nachricht hinzufügen
             message.append(String.format("Verstrichene Zeit: %d Minuten und %d Sekunden.", minutes, seconds));
-            compressionInfoTextArea.setText(message.toString());
-            //JOptionPane.showMessageDialog(this, message.toString());
+
+            SwingUtilities.invokeLater(() -> {
+                compressionInfoTextArea.setText(message.toString());
+                saveButton.setEnabled(true);
+                if (errors.length() > 0) {
+                    JOptionPane.showMessageDialog(this, "Fehler beim Verarbeiten der Dateien:\n" + errors);
+                }
+            });
         }).start();
     }
 
+    // Ziel-Auflösung in dpi, 0 wenn prozentual verkleinert wird
+    private float getTargetDpi() {
+        String resolution = (String) resolutionComboBox.getSelectedItem();
+        switch (resolution) {
+            case "Ziel 300 dpi":
+                return 300f;
+            case "Ziel 200 dpi":
+                return 200f;
+            case "Ziel 150 dpi":
+                return 150f;
+            case "Ziel 96 dpi":
+                return 96f;
+            default:
+                return 0f;
+        }
+    }
+
+    private CompressionSettings getCompressionSettings() {
+        CompressionSettings settings = new CompressionSettings(getImageQuality(), bwCheckBox.isSelected(), getResolutionScale());
+        settings.setFastDownsample(fastDownsampleCheckBox.isSelected());
+        settings.setTargetDpi(getTargetDpi());
+        settings.setBilevel(bilevelCheckBox.isSelected());
+        settings.setAdaptiveCodec(adaptiveCodecCheckBox.isSelected());
+        settings.setTargetSizeBytes((long) (((Number) targetSizeSpinner.getValue()).doubleValue() * 1024 * 1024));
+        return settings;
+    }
+
     private float getImageQuality() {
         String quality = (String) qualityComboBox.getSelectedItem();
         switch (quality) {
@@ -498,110 +669,6 @@ public class Shrinkify extends JFrame {
         }
     }
 
-    private void compressPDFWithPDFBox(File inputFile, File outputFile, float imageQuality, boolean convertBW, float resolutionScale) throws IOException {
-        try (PDDocument document = Loader.loadPDF(inputFile)) {
-            for (PDPage page : document.getPages()) {
-                PDResources resources = page.getResources();
-                Iterable<COSName> xObjectNames = resources.getXObjectNames();
-
-                for (COSName xObjectName : xObjectNames) {
-                    PDXObject xObject = resources.getXObject(xObjectName);
-
-                    if (xObject instanceof PDImageXObject) {
-                        PDImageXObject imageObject = (PDImageXObject) xObject;
-
-                        // Prüfen der Bilddimensionen vor dem Laden des Bildes
-                        int imageWidth = imageObject.getWidth();
-                        int imageHeight = imageObject.getHeight();
-
-                        // Skip if dimensions are invalid
-                        if (imageWidth <= 1 || imageHeight <= 1) {
-                            continue; // Bild überspringen
-                        }
-
-                        BufferedImage image;
-                        try {
-                            image = imageObject.getImage();
-                        } catch (Exception e) {
-                            continue;
-                        }
-
-                        // Prüfen der Dimensionen des geladenen BufferedImage
-                        int bufferedImageWidth = image.getWidth();
-                        int bufferedImageHeight = image.getHeight();
-
-                        if (bufferedImageWidth <= 1 || bufferedImageHeight <= 1) {
-                            continue; // Bild überspringen
-                        }
-
-                        // Bild nach Bedarf in RGB konvertieren
-                        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
-                            BufferedImage rgbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-                            Graphics2D g = rgbImage.createGraphics();
-                            g.drawImage(image, 0, 0, null);
-                            g.dispose();
-                            image = rgbImage;
-                        }
-
-                        // Bild in Schwarz-Weiß konvertieren, falls ausgewählt
-                        if (convertBW) {
-                            BufferedImage bwImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-                            Graphics2D g = bwImage.createGraphics();
-                            g.drawImage(image, 0, 0, null);
-                            g.dispose();
-                            image = bwImage;
-                        }
-
-                        // Bildauflösung skalieren, falls erforderlich
-                        if (resolutionScale != 1.0f) {
-                            int newWidth = (int) (image.getWidth() * resolutionScale);
-                            int newHeight = (int) (image.getHeight() * resolutionScale);
-
-                            // Überprüfen, ob die neuen Dimensionen gültig sind
-                            if (newWidth > 1 && newHeight > 1) {
-                                BufferedImage scaledImage = new BufferedImage(newWidth, newHeight, image.getType());
-                                Graphics2D g = scaledImage.createGraphics();
-                                g.drawImage(image, 0, 0, scaledImage.getWidth(), scaledImage.getHeight(), null);
-                                g.dispose();
-                                image = scaledImage;
-                            } else {
-                                continue; // Bild überspringen
-                            }
-                        }
-
-                        // Bild komprimieren und speichern
-                        try {
-                            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                            ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
-                            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
-                            writer.setOutput(ios);
-
-                            ImageWriteParam param = writer.getDefaultWriteParam();
-                            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                            param.setCompressionQuality(imageQuality);
-
-                            writer.write(null, new IIOImage(image, null, null), param);
-                            writer.dispose();
-
-                            InputStream in = new ByteArrayInputStream(baos.toByteArray());
-                            PDImageXObject compressedImage = JPEGFactory.createFromStream(document, in);
-                            resources.put(xObjectName, compressedImage);
-
-                            IOUtils.closeQuietly(in);
-                            IOUtils.closeQuietly(ios);
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                }
-            }
-
-            document.save(outputFile);
-        }
-    }
-
-
-
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             try {
@@ -0,0 +1,463 @@
+package com.iradraconis.shrinkify;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kommandozeilen-Modus ohne grafische Oberfläche, z. B. für Batch-Server ohne Display.
+ * Verwendet keine Swing-Klassen.
+ */
+public class ShrinkifyCli {
+
+    private static final String USAGE = String.join("\n",
+            "Aufruf: shrinkify --cli [Optionen] <PDF-Dateien oder Verzeichnisse>...",
+            "",
+            "Optionen:",
+            "  -q, --quality <0.05..1.0>   JPEG-Qualität (Standard 0.5)",
+            "  -r, --resolution <Prozent>  Auflösung in Prozent, 30..100 (Standard 40)",
+            "      --dpi <dpi>             Ziel-Auflösung in dpi statt Prozent",
+            "      --bw                    In Graustufen umwandeln",
+            "      --bilevel               1-Bit-Dokument (CCITT G4)",
+            "      --adaptive              Kodierung pro Bild automatisch wählen",
+            "      --fast-downsample       JPEG-Bilder in reduzierter Auflösung dekodieren",
+            "      --memory-budget <MB>    Speicher für Datenströme je Datei, darüber temporäre Datei",
+            "      --target-size <MB>      Zielgröße je Datei; Qualität und Auflösung werden gesucht",
+            "      --estimate              Nur Größe und Dauer anhand von Stichproben schätzen",
+            "  -o, --output <Verzeichnis>  Zielverzeichnis, Unterverzeichnisse werden nachgebildet",
+            "      --force                 Auch bereits komprimierte Dateien erneut komprimieren",
+            "      --overwrite             Originaldateien überschreiben",
+            "  -w, --workers <Anzahl>      Parallel verarbeitete Dateien (Standard: Anzahl CPUs)",
+            "      --report <Datei>        Bericht schreiben (.json oder .csv)",
+            "      --watch <Verzeichnis>   Verzeichnis überwachen und neue PDFs nach --output komprimieren",
+            "                              (mehrfach möglich, dann je Verzeichnis ein Unterordner)",
+            "      --serve <Port>          HTTP-Dienst starten: POST /compress, GET /metrics; Optionen als",
+            "                              Parameter, z. B. /compress?quality=0.3&target-size=2&fast-downsample",
+            "      --bind <Adresse>        Adresse des HTTP-Dienstes (Standard 127.0.0.1)",
+            "      --timeout <Sekunden>    Zeitlimit je Anfrage im HTTP-Dienst (Standard 300)",
+            "      --queue <Anzahl>        Länge der Warteschlange für --watch und --serve (Standard 4 je Worker)",
+            "  -h, --help                  Diese Hilfe anzeigen");
+
+    // Größte angenommene Datei im HTTP-Dienst
+    private static final long MAX_UPLOAD_BYTES = 512L * 1024 * 1024;
+
+    // Abstand der Statuszeilen im Überwachungsmodus
+    private static final long WATCH_STATUS_MILLIS = 60_000;
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    ShrinkifyCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new ShrinkifyCli(System.out, System.err).run(args));
+    }
+
+    /**
+     * Führt den Lauf aus und liefert den Exit-Code: 0 bei Erfolg, 1 bei fehlgeschlagenen Dateien,
+     * 2 bei ungültigen Argumenten.
+     */
+    int run(String[] args) {
+        float quality = 0.5f;
+        float resolutionScale = 0.4f;
+        float targetDpi = 0;
+        boolean convertBW = false;
+        boolean bilevel = false;
+        boolean adaptive = false;
+        boolean fastDownsample = false;
+        long memoryBudgetMb = 0;
+        double targetSizeMb = 0;
+        boolean overwrite = false;
+        boolean estimate = false;
+        boolean force = false;
+        List<File> watchDirs = new ArrayList<>();
+        int queueCapacity = 0;
+        int servePort = -1;
+        String bindAddress = "127.0.0.1";
+        long timeoutSeconds = 300;
+        File outputDir = null;
+        File reportFile = null;
+        int workers = BatchCompressor.defaultWorkers();
+        List<File> inputFiles = new ArrayList<>();
+        List<String> relativeDirs = new ArrayList<>();
+        List<File> inputArgs = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-q":
+                    case "--quality":
+                        quality = Float.parseFloat(value(args, ++i, arg));
+                        if (quality <= 0 || quality > 1) {
+                            throw new IllegalArgumentException("Qualität muss zwischen 0 und 1 liegen: " + quality);
+                        }
+                        break;
+                    case "-r":
+                    case "--resolution":
+                        int percent = Integer.parseInt(value(args, ++i, arg).replace("%", ""));
+                        if (percent < 1 || percent > 100) {
+                            throw new IllegalArgumentException("Auflösung muss zwischen 1 und 100 Prozent liegen: " + percent);
+                        }
+                        resolutionScale = percent / 100f;
+                        break;
+                    case "--dpi":
+                        targetDpi = Float.parseFloat(value(args, ++i, arg));
+                        if (!(targetDpi > 0)) {
+                            throw new IllegalArgumentException("Auflösung in dpi muss größer als 0 sein: " + targetDpi);
+                        }
+                        break;
+                    case "--bw":
+                        convertBW = true;
+                        break;
+                    case "--bilevel":
+                        bilevel = true;
+                        break;
+                    case "--adaptive":
+                        adaptive = true;
+                        break;
+                    case "--fast-downsample":
+                        fastDownsample = true;
+                        break;
+                    case "--memory-budget":
+                        memoryBudgetMb = Long.parseLong(value(args, ++i, arg));
+                        if (memoryBudgetMb < 0) {
+                            throw new IllegalArgumentException("Speicherbudget darf nicht negativ sein: " + memoryBudgetMb);
+                        }
+                        break;
+                    case "--target-size":
+                        targetSizeMb = Double.parseDouble(value(args, ++i, arg));
+                        if (targetSizeMb <= 0) {
+                            throw new IllegalArgumentException("Zielgröße muss größer als 0 sein: " + targetSizeMb);
+                        }
+                        break;
+                    case "--watch":
+                        File watchDir = new File(value(args, ++i, arg));
+                        if (!watchDir.isDirectory()) {
+                            throw new IllegalArgumentException("Kein Verzeichnis: " + watchDir);
+                        }
+                        watchDirs.add(watchDir);
+                        break;
+                    case "--serve":
+                        servePort = Integer.parseInt(value(args, ++i, arg));
+                        if (servePort < 0 || servePort > 65535) {
+                            throw new IllegalArgumentException("Ungültiger Port: " + servePort);
+                        }
+                        break;
+                    case "--bind":
+                        bindAddress = value(args, ++i, arg);
+                        break;
+                    case "--timeout":
+                        timeoutSeconds = Long.parseLong(value(args, ++i, arg));
+                        if (timeoutSeconds < 1) {
+                            throw new IllegalArgumentException("Zeitlimit muss mindestens 1 Sekunde sein: " + timeoutSeconds);
+                        }
+                        break;
+                    case "--queue":
+                        queueCapacity = Integer.parseInt(value(args, ++i, arg));
+                        if (queueCapacity < 1) {
+                            throw new IllegalArgumentException("Warteschlange muss mindestens 1 lang sein: " + queueCapacity);
+                        }
+                        break;
+                    case "--force":
+                        force = true;
+                        break;
+                    case "--estimate":
+                        estimate = true;
+                        break;
+                    case "-o":
+                    case "--output":
+                        outputDir = new File(value(args, ++i, arg));
+                        break;
+                    case "--overwrite":
+                        overwrite = true;
+                        break;
+                    case "-w":
+                    case "--workers":
+                        workers = Integer.parseInt(value(args, ++i, arg));
+                        if (workers < 1) {
+                            throw new IllegalArgumentException("Es muss mindestens 1 Worker geben: " + workers);
+                        }
+                        break;
+                    case "--report":
+                        reportFile = new File(value(args, ++i, arg));
+                        break;
+                    case "-h":
+                    case "--help":
+                        out.println(USAGE);
+                        return 0;
+                    default:
+                        if (arg.startsWith("-")) {
+                            throw new IllegalArgumentException("Unbekannte Option: " + arg);
+                        }
+                        inputArgs.add(new File(arg));
+                }
+            }
+            // Erst nach allen Optionen, damit das Zielverzeichnis bekannt ist
+            Path outputPath = outputDir != null ? outputDir.toPath().toAbsolutePath().normalize() : null;
+            for (File inputArg : inputArgs) {
+                collectPdfFiles(inputArg, "", outputPath, inputFiles, relativeDirs);
+            }
+            if (servePort >= 0) {
+                if (!inputFiles.isEmpty() || !watchDirs.isEmpty() || outputDir != null || overwrite || estimate) {
+                    throw new IllegalArgumentException("Im HTTP-Dienst werden keine Dateien oder Verzeichnisse angegeben.");
+                }
+            } else if (!watchDirs.isEmpty()) {
+                if (!inputFiles.isEmpty() || outputDir == null || overwrite || estimate) {
+                    throw new IllegalArgumentException("Im Überwachungsmodus nur --watch und --output angeben, keine Dateien.");
+                }
+            } else if (inputFiles.isEmpty()) {
+                throw new IllegalArgumentException("Keine PDF-Dateien angegeben.");
+            }
+            if (!estimate && servePort < 0 && overwrite == (outputDir != null)) {
+                throw new IllegalArgumentException("Bitte genau eine der Optionen --output oder --overwrite angeben.");
+            }
+            if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+                throw new IllegalArgumentException("Zielverzeichnis kann nicht angelegt werden: " + outputDir);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println("Fehler: " + e.getMessage());
+            err.println();
+            err.println(USAGE);
+            return 2;
+        }
+
+        CompressionSettings settings = new CompressionSettings(quality, convertBW, resolutionScale);
+        settings.setTargetDpi(targetDpi);
+        settings.setBilevel(bilevel);
+        settings.setAdaptiveCodec(adaptive);
+        settings.setFastDownsample(fastDownsample);
+        settings.setMemoryBudgetBytes(memoryBudgetMb * 1024 * 1024);
+        settings.setTargetSizeBytes((long) (targetSizeMb * 1024 * 1024));
+
+        if (servePort >= 0) {
+            // Qualität und Auflösung kommen je Anfrage als Parameter
+            return serve(new InetSocketAddress(bindAddress, servePort), workers,
+                    queueCapacity > 0 ? queueCapacity : 4 * workers, timeoutSeconds);
+        }
+
+        DecimalFormat df = new DecimalFormat("#.##");
+        if (estimate) {
+            return estimate(settings, inputFiles, df);
+        }
+        if (!watchDirs.isEmpty()) {
+            return watch(settings, watchDirs, outputDir, workers, queueCapacity > 0 ? queueCapacity : 4 * workers, df);
+        }
+        List<FileResult> results;
+        try {
+            BatchCompressor batch = new BatchCompressor(settings, workers);
+            batch.setUseManifest(!force);
+            // Unterverzeichnisse der Eingabe werden im Zielverzeichnis nachgebildet
+            List<File> outputDirs = new ArrayList<>(inputFiles.size());
+            for (String relativeDir : relativeDirs) {
+                outputDirs.add(outputDir == null ? null : new File(outputDir, relativeDir));
+            }
+            results = batch.run(inputFiles, outputDirs,
+                    (index, result, completed, total) -> {
+                        synchronized (out) {
+                            if (result.isSkipped()) {
+                                out.printf("[%d/%d] %s: bereits komprimiert, übersprungen%n", completed, total,
+                                        result.getInputFile().getName());
+                            } else if (result.isSuccess()) {
+                                out.printf("[%d/%d] %s: %s MB -> %s MB (%s%%), %d ms%n", completed, total,
+                                        result.getInputFile().getName(),
+                                        df.format(result.getOriginalSize() / (1024.0 * 1024.0)),
+                                        df.format(result.getCompressedSize() / (1024.0 * 1024.0)),
+                                        df.format(result.getReductionPercent()),
+                                        result.getDurationMillis());
+                                CompressionStats stats = result.getStats();
+                                if (stats.getTargetAttempts() > 0) {
+                                    out.printf("        Zielgröße: Qualität %s, Auflösung x%s nach %d Versuchen%n",
+                                            df.format(stats.getChosenQuality()), df.format(stats.getChosenScale()),
+                                            stats.getTargetAttempts());
+                                }
+                            } else {
+                                err.printf("[%d/%d] %s: Fehler: %s%n", completed, total,
+                                        result.getInputFile().getName(), result.getError().getMessage());
+                            }
+                        }
+                    });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("Abgebrochen.");
+            return 1;
+        }
+
+        // Hilft bei der Wahl der Heap-Größe (-Xmx)
+        PixelBudget budget = PixelBudget.shared();
+        out.printf("Bildspeicher: höchstens %s MB von %s MB belegt, %d ms gewartet%n",
+                df.format(budget.getPeakReservedBytes() / (1024.0 * 1024.0)),
+                df.format(budget.getCapacityBytes() / (1024.0 * 1024.0)),
+                budget.getTotalWaitMillis());
+
+        if (reportFile != null) {
+            try {
+                BatchReport.write(reportFile, results);
+            } catch (IOException e) {
+                err.println("Bericht konnte nicht geschrieben werden: " + e.getMessage());
+                return 1;
+            }
+        }
+
+        boolean allSucceeded = results.stream().allMatch(FileResult::isSuccess);
+        return allSucceeded ? 0 : 1;
+    }
+
+    // Läuft, bis der Prozess beendet wird
+    private int serve(InetSocketAddress address, int workers, int queueCapacity, long timeoutSeconds) {
+        CompressionServer server = new CompressionServer(address, workers, queueCapacity,
+                TimeUnit.SECONDS.toMillis(timeoutSeconds), MAX_UPLOAD_BYTES);
+        try {
+            server.start();
+        } catch (IOException e) {
+            err.println("HTTP-Dienst konnte nicht gestartet werden: " + e.getMessage());
+            return 1;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(5)));
+        out.printf("HTTP-Dienst auf http://%s:%d, %d Worker, %d Plätze in der Warteschlange%n",
+                address.getHostString(), server.getAddress().getPort(), workers, queueCapacity);
+        try {
+            new CountDownLatch(1).await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    // Läuft, bis der Prozess beendet wird; gibt regelmäßig den Zustand der Warteschlange aus
+    private int watch(CompressionSettings settings, List<File> watchDirs, File outputDir, int workers, int queueCapacity,
+            DecimalFormat df) {
+        FolderWatcher watcher;
+        try {
+            watcher = new FolderWatcher(settings, watchDirs, outputDir, workers, queueCapacity);
+        } catch (IllegalArgumentException e) {
+            err.println("Fehler: " + e.getMessage());
+            return 2;
+        }
+        Thread status = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(WATCH_STATUS_MILLIS);
+                    synchronized (out) {
+                        out.printf("Warteschlange %d/%d, %d Worker aktiv, %d komprimiert, %d übersprungen, %d Fehler, "
+                                + "%d zurückgestellt, Latenz Ø %d ms (max. %d ms), Wartezeit Ø %d ms%n",
+                                watcher.getQueueDepth(), watcher.getQueueCapacity(), watcher.getBusyWorkers(),
+                                watcher.getFilesCompressed(), watcher.getFilesSkipped(), watcher.getFilesFailed(),
+                                watcher.getDeferrals(), watcher.getAverageLatencyMillis(), watcher.getMaxLatencyMillis(),
+                                watcher.getAverageQueueWaitMillis());
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Überwachung beendet
+            }
+        }, "shrinkify-watch-status");
+        status.setDaemon(true);
+        status.start();
+
+        out.println("Überwache " + watchDirs + ", Ausgabe nach " + outputDir);
+        try {
+            watcher.run((result, latencyMillis) -> {
+                synchronized (out) {
+                    if (result.isSkipped()) {
+                        out.printf("%s: bereits komprimiert, übersprungen%n", result.getInputFile().getName());
+                    } else if (result.isSuccess()) {
+                        out.printf("%s: %s MB -> %s MB (%s%%), %d ms nach Eingang%n", result.getInputFile().getName(),
+                                df.format(result.getOriginalSize() / (1024.0 * 1024.0)),
+                                df.format(result.getCompressedSize() / (1024.0 * 1024.0)),
+                                df.format(result.getReductionPercent()), latencyMillis);
+                    } else {
+                        err.printf("%s: Fehler: %s%n", result.getInputFile().getName(), result.getError().getMessage());
+                    }
+                }
+            });
+        } catch (IOException e) {
+            err.println("Überwachung fehlgeschlagen: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            status.interrupt();
+        }
+        return 0;
+    }
+
+    private int estimate(CompressionSettings settings, List<File> inputFiles, DecimalFormat df) {
+        PdfCompressor compressor = new PdfCompressor(settings);
+        long originalTotal = 0;
+        long estimatedTotal = 0;
+        long millisTotal = 0;
+        boolean failed = false;
+        for (int i = 0; i < inputFiles.size(); i++) {
+            File inputFile = inputFiles.get(i);
+            try {
+                SizeEstimate result = compressor.estimate(inputFile);
+                out.printf("[%d/%d] %s: %s MB -> ca. %s MB (%s%%), ca. %d ms, %d von %d Bildern geprüft%n",
+                        i + 1, inputFiles.size(), inputFile.getName(),
+                        df.format(result.getOriginalSize() / (1024.0 * 1024.0)),
+                        df.format(result.getEstimatedSize() / (1024.0 * 1024.0)),
+                        df.format(result.getReductionPercent()), result.getEstimatedMillis(),
+                        result.getImagesSampled(), result.getImagesFound());
+                originalTotal += result.getOriginalSize();
+                estimatedTotal += result.getEstimatedSize();
+                millisTotal += result.getEstimatedMillis();
+            } catch (IOException | RuntimeException e) {
+                err.printf("[%d/%d] %s: Fehler: %s%n", i + 1, inputFiles.size(), inputFile.getName(), e.getMessage());
+                failed = true;
+            }
+        }
+        out.printf("Gesamt: %s MB -> ca. %s MB, ca. %d s mit einer Datei gleichzeitig%n",
+                df.format(originalTotal / (1024.0 * 1024.0)), df.format(estimatedTotal / (1024.0 * 1024.0)),
+                millisTotal / 1000);
+        return failed ? 1 : 0;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Wert fehlt für " + option);
+        }
+        return args[index];
+    }
+
+    // Verzeichnisse werden rekursiv nach PDF-Dateien durchsucht; relativeDirs erhält zu jeder Datei den
+    // Pfad unterhalb des angegebenen Verzeichnisses, damit gleichnamige Dateien nicht kollidieren.
+    // Eigene Ergebnisse, also das Zielverzeichnis und Dateien mit dem Präfix, werden dabei ausgelassen.
+    private static void collectPdfFiles(File file, String relativeDir, Path outputPath, List<File> inputFiles,
+            List<String> relativeDirs) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) {
+                return;
+            }
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isDirectory() && child.toPath().toAbsolutePath().normalize().equals(outputPath)) {
+                    continue;
+                }
+                if (child.isFile() && child.getName().startsWith(BatchCompressor.OUTPUT_PREFIX)) {
+                    continue;
+                }
+                collectPdfFiles(child, child.isDirectory() ? relativeDir + child.getName() + File.separator : relativeDir,
+                        outputPath, inputFiles, relativeDirs);
+            }
+        } else if (file.getName().toLowerCase().endsWith(".pdf")) {
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("Datei nicht gefunden: " + file);
+            }
+            inputFiles.add(file);
+            relativeDirs.add(relativeDir);
+        } else if (!file.exists()) {
+            throw new IllegalArgumentException("Datei nicht gefunden: " + file);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.iradraconis.shrinkify;
+
+import java.io.File;
+
+/**
+ * Hochgerechnete Größe und Dauer der Komprimierung einer Datei, ermittelt aus einer Stichprobe ihrer Bilder.
+ */
+public class SizeEstimate {
+
+    private final File inputFile;
+    private final long originalSize;
+    private final long estimatedSize;
+    private final long estimatedMillis;
+    private final int imagesFound;
+    private final int imagesSampled;
+
+    SizeEstimate(File inputFile, long originalSize, long estimatedSize, long estimatedMillis, int imagesFound,
+            int imagesSampled) {
+        this.inputFile = inputFile;
+        this.originalSize = originalSize;
+        this.estimatedSize = estimatedSize;
+        this.estimatedMillis = estimatedMillis;
+        this.imagesFound = imagesFound;
+        this.imagesSampled = imagesSampled;
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public long getOriginalSize() {
+        return originalSize;
+    }
+
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * Geschätzte Dauer der vollständigen Komprimierung dieser Datei.
+     */
+    public long getEstimatedMillis() {
+        return estimatedMillis;
+    }
+
+    public int getImagesFound() {
+        return imagesFound;
+    }
+
+    /**
+     * Anzahl der tatsächlich komprimierten Bilder; die übrigen wurden hochgerechnet.
+     */
+    public int getImagesSampled() {
+        return imagesSampled;
+    }
+
+    public double getReductionPercent() {
+        if (originalSize <= 0) {
+            return 0;
+        }
+        return ((originalSize - estimatedSize) / (double) originalSize) * 100;
+    }
+}